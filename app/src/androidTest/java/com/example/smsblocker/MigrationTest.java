@@ -0,0 +1,120 @@
+package com.example.smsblocker;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.room.Room;
+import androidx.room.migration.Migration;
+import androidx.room.testing.MigrationTestHelper;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+@RunWith(AndroidJUnit4.class)
+public class MigrationTest {
+
+    private static final String TEST_DB = "migration-test.db";
+    // Every test migrates to the current version, whose schema the Room processor exports on
+    // each build; older versions are created with plain SQL, as the app created them
+    private static final int LATEST_VERSION = 10;
+
+    @Rule
+    public MigrationTestHelper helper = new MigrationTestHelper(
+            InstrumentationRegistry.getInstrumentation(), SmsBlockerDatabase.class);
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(TEST_DB);
+    }
+
+    // Version 3 as a fresh install created it, before is_retention_set and normalized_number
+    @Test
+    public void migratesFromVersion3() throws IOException {
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(context.getDatabasePath(TEST_DB), null);
+        db.execSQL("CREATE TABLE blocked_numbers (_id INTEGER PRIMARY KEY AUTOINCREMENT, phone_number TEXT NOT NULL, " +
+                "unblock_time INTEGER NOT NULL DEFAULT 0);");
+        db.execSQL("INSERT INTO blocked_numbers (phone_number, unblock_time) VALUES " +
+                "('+15551234567', 0), ('+15551234567', 500), ('+15557654321', 900);");
+        db.setVersion(3);
+        db.close();
+
+        SupportSQLiteDatabase migrated = helper.runMigrationsAndValidate(TEST_DB, LATEST_VERSION, true, migrations());
+        try (Cursor cursor = migrated.query("SELECT _id, normalized_number, unblock_time, is_retention_set " +
+                "FROM blocked_numbers ORDER BY _id")) {
+            // The permanent duplicate is kept
+            assertEquals(2, cursor.getCount());
+            assertTrue(cursor.moveToNext());
+            assertEquals(1, cursor.getLong(0));
+            assertNotNull(cursor.getString(1));
+            assertEquals(0, cursor.getLong(2));
+            assertTrue(cursor.moveToNext());
+            assertEquals(900, cursor.getLong(2));
+            assertEquals(0, cursor.getInt(3));
+        }
+    }
+
+    @Test
+    public void migratesFromVersion7AndKeepsRules() throws IOException {
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(context.getDatabasePath(TEST_DB), null);
+        db.execSQL("CREATE TABLE blocked_numbers (_id INTEGER PRIMARY KEY AUTOINCREMENT, phone_number TEXT NOT NULL, " +
+                "unblock_time INTEGER NOT NULL DEFAULT 0, is_retention_set INTEGER NOT NULL DEFAULT 0, normalized_number TEXT);");
+        db.execSQL("CREATE UNIQUE INDEX idx_blocked_numbers_normalized_number ON blocked_numbers (normalized_number);");
+        db.execSQL("CREATE INDEX idx_blocked_numbers_unblock_time ON blocked_numbers (unblock_time);");
+        db.execSQL("CREATE TABLE keyword_rules (_id INTEGER PRIMARY KEY AUTOINCREMENT, keyword TEXT NOT NULL UNIQUE);");
+        db.execSQL("CREATE TABLE regex_rules (_id INTEGER PRIMARY KEY AUTOINCREMENT, pattern TEXT NOT NULL, " +
+                "target TEXT NOT NULL, priority INTEGER NOT NULL DEFAULT 0);");
+        db.execSQL("INSERT INTO blocked_numbers (phone_number, unblock_time, is_retention_set, normalized_number) " +
+                "VALUES ('+15551234567', 1000, 1, '+15551234567');");
+        db.execSQL("INSERT INTO keyword_rules (keyword) VALUES ('prize');");
+        db.execSQL("INSERT INTO regex_rules (pattern, target, priority) VALUES ('^\\+1900', 'sender', 5);");
+        db.setVersion(7);
+        db.close();
+
+        SupportSQLiteDatabase migrated = helper.runMigrationsAndValidate(TEST_DB, LATEST_VERSION, true, migrations());
+        // 8 -> 9 adds the stats tables, 9 -> 10 the blocklist version, which starts at zero
+        migrated.execSQL("INSERT INTO sender_daily_stats (day, sender) VALUES (20000, '+15551234567');");
+        try (Cursor cursor = migrated.query("SELECT blocked FROM sender_daily_stats")) {
+            assertTrue(cursor.moveToNext());
+            assertEquals(0, cursor.getLong(0));
+        }
+        try (Cursor cursor = migrated.query("SELECT COALESCE(MAX(version), 0) FROM blocklist_version")) {
+            assertTrue(cursor.moveToNext());
+            assertEquals(0, cursor.getLong(0));
+        }
+        migrated.close();
+
+        // Opening through Room checks the migrated schema against the entities once more
+        SmsBlockerDatabase database = Room.databaseBuilder(context, SmsBlockerDatabase.class, TEST_DB)
+                .addMigrations(migrations())
+                .allowMainThreadQueries()
+                .build();
+        try {
+            assertTrue(database.blockedNumbers().contains("+15551234567"));
+            assertEquals(1000, database.blockedNumbers().find("+15551234567").getUnblockTime());
+            // keyword stays unique once it is a Room index
+            assertEquals(-1, database.keywordRules().insert(new KeywordRule(0, "prize")));
+            RegexRule rule = database.regexRules().getAll().get(0);
+            assertEquals("^\\+1900", rule.getPattern());
+            assertEquals(5, rule.getPriority());
+        } finally {
+            database.close();
+        }
+    }
+
+    private Migration[] migrations() {
+        return Migrations.all(PhoneNumberNormalizer.forContext(context));
+    }
+}
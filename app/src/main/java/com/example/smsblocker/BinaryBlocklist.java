@@ -0,0 +1,358 @@
+package com.example.smsblocker;
+
+import android.content.Context;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+// Lookup index for large blocklists: the numbers that were blocked permanently when the
+// snapshot was last rebuilt, kept in a compact binary file that is memory-mapped and searched in
+// place, so even a million numbers cost almost no heap and open in constant time. The table
+// stays the source of truth; the index is derived from it, carries the blocklist version it was
+// built at, and BlocklistSnapshot only trusts it together with the changes made since.
+//
+// File layout (big-endian):
+//   header  magic, format version, count, block size, block count, blocklist version,
+//           CRC32 of everything after the header
+//   index   per block: first number (long) and offset of its data (int), sorted by number
+//   data    per block: the remaining numbers as varint deltas from their predecessor
+// Numbers are the long keys produced by NumberSet.encode, so only numeric entries are stored.
+public final class BinaryBlocklist {
+
+    private static final String TAG = "BinaryBlocklist";
+    private static final String INDEX_FILE = "blocklist_index.bin";
+    // Version 1 imports were stored only here, see LegacyBlocklistMigration
+    static final String LEGACY_FILE = "spam_numbers.bin";
+    private static final int FILE_MAGIC = 0x534D424C;  // "SMBL"
+    private static final int FORMAT_VERSION = 2;
+    private static final int LEGACY_FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 36;
+    private static final int LEGACY_HEADER_SIZE = 28;
+    private static final int INDEX_ENTRY_SIZE = 12;
+    // Numbers per block: a lookup binary-searches the index, then decodes at most this many deltas
+    static final int BLOCK_SIZE = 64;
+
+    private static final BinaryBlocklist EMPTY = new BinaryBlocklist(null, 0, 0, HEADER_SIZE, -1);
+    private static final ExecutorService verifier = Executors.newSingleThreadExecutor();
+    private static final Object loadLock = new Object();
+    private static volatile BinaryBlocklist current;
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int blockCount;
+    private final int headerSize;
+    private final long version;
+
+    private BinaryBlocklist(ByteBuffer buffer, int count, int blockCount, int headerSize, long version) {
+        this.buffer = buffer;
+        this.count = count;
+        this.blockCount = blockCount;
+        this.headerSize = headerSize;
+        this.version = version;
+    }
+
+    // Returns the mapped index, or an empty one if none has been built
+    public static BinaryBlocklist get(Context context) {
+        BinaryBlocklist list = current;
+        if (list != null) {
+            return list;
+        }
+        synchronized (loadLock) {
+            if (current == null) {
+                current = load(indexFile(context).getBaseFile());
+                verifyAsync(context.getApplicationContext(), current);
+            }
+            return current;
+        }
+    }
+
+    // Loading checks the header and the block offsets; the checksum is verified in the background
+    private static void verifyAsync(final Context context, final BinaryBlocklist list) {
+        if (list.count == 0) {
+            return;
+        }
+        verifier.execute(() -> {
+            if (list.verify()) {
+                return;
+            }
+            Log.e(TAG, INDEX_FILE + " failed its checksum, discarding it");
+            synchronized (loadLock) {
+                if (current != list) {
+                    return;
+                }
+                current = EMPTY;
+                indexFile(context).delete();
+            }
+            // Lookups use the table until the rebuilt snapshot has written a new index
+            BlockedNumbersDatabaseHelper.getInstance(context).refreshSnapshot();
+        });
+    }
+
+    // Replaces the index with the given keys (in any order, duplicates allowed) at the blocklist
+    // version they were read at. Runs off the writer thread; O(n log n).
+    static void rebuild(Context context, long[] keys, int size, long version) {
+        Arrays.sort(keys, 0, size);
+        int unique = 0;
+        for (int i = 0; i < size; i++) {
+            if (unique == 0 || keys[i] != keys[unique - 1]) {
+                keys[unique++] = keys[i];
+            }
+        }
+
+        synchronized (loadLock) {
+            AtomicFile file = indexFile(context);
+            FileOutputStream stream = null;
+            try {
+                stream = file.startWrite();
+                write(stream, keys, unique, version);
+                file.finishWrite(stream);
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to write " + INDEX_FILE + ": " + e.getMessage());
+                if (stream != null) {
+                    file.failWrite(stream);
+                }
+                return;
+            }
+            // Readers still holding the old mapping keep working; the replaced file lives until unmapped
+            BinaryBlocklist written = load(file.getBaseFile());
+            if (!written.verify()) {
+                Log.e(TAG, INDEX_FILE + " failed its checksum after writing");
+                return;
+            }
+            current = written;
+        }
+        Log.d(TAG, "Index now holds " + unique + " numbers at version " + version);
+    }
+
+    public int size() {
+        return count;
+    }
+
+    // Blocklist version the index was built at; -1 if there is none
+    long version() {
+        return version;
+    }
+
+    // Expects a key produced by PhoneNumberNormalizer
+    public boolean contains(String normalizedNumber) {
+        if (count == 0 || normalizedNumber == null) {
+            return false;
+        }
+        long key = NumberSet.encode(normalizedNumber);
+        if (key == 0) {
+            return false;
+        }
+
+        // Last block whose first number is <= key
+        int low = 0;
+        int high = blockCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (firstKey(mid) <= key) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (high < 0) {
+            return false;
+        }
+
+        long value = firstKey(high);
+        if (value == key) {
+            return true;
+        }
+        int position = dataStart() + blockOffset(high);
+        int end = blockEnd(high);
+        while (position < end) {
+            long delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                // A varint running past its block means the data is damaged
+                if (position >= end || shift > 63) {
+                    return false;
+                }
+                b = buffer.get(position++);
+                delta |= (long) (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            value += delta;
+            if (value >= key) {
+                return value == key;
+            }
+        }
+        return false;
+    }
+
+    // Recomputes the checksum over the whole file; O(n), so callers run it off the main thread
+    public boolean verify() {
+        if (buffer == null) {
+            return true;
+        }
+        CRC32 crc = new CRC32();
+        ByteBuffer data = buffer.duplicate();
+        data.position(headerSize);
+        byte[] chunk = new byte[8192];
+        while (data.hasRemaining()) {
+            int length = Math.min(chunk.length, data.remaining());
+            data.get(chunk, 0, length);
+            crc.update(chunk, 0, length);
+        }
+        return crc.getValue() == buffer.getLong(headerSize - 8);
+    }
+
+    // Every number in the file, for moving a version 1 import into the table
+    List<String> numbers() {
+        List<String> numbers = new ArrayList<>(count);
+        for (int block = 0; block < blockCount; block++) {
+            long value = firstKey(block);
+            numbers.add(NumberSet.decode(value));
+            int position = dataStart() + blockOffset(block);
+            int end = blockEnd(block);
+            while (position < end) {
+                long delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    if (position >= end || shift > 63) {
+                        return numbers;
+                    }
+                    b = buffer.get(position++);
+                    delta |= (long) (b & 0x7f) << shift;
+                    shift += 7;
+                } while (b < 0);
+                value += delta;
+                numbers.add(NumberSet.decode(value));
+            }
+        }
+        return numbers;
+    }
+
+    private long firstKey(int block) {
+        return buffer.getLong(headerSize + block * INDEX_ENTRY_SIZE);
+    }
+
+    private int blockOffset(int block) {
+        return buffer.getInt(headerSize + block * INDEX_ENTRY_SIZE + 8);
+    }
+
+    private int blockEnd(int block) {
+        return block + 1 < blockCount ? dataStart() + blockOffset(block + 1) : buffer.limit();
+    }
+
+    private int dataStart() {
+        return headerSize + blockCount * INDEX_ENTRY_SIZE;
+    }
+
+    // Writes the first `count` keys, which must be sorted and unique
+    static void write(OutputStream stream, long[] keys, int count, long version) throws IOException {
+        int blockCount = (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        byte[] data = new byte[count * 10];
+        int[] offsets = new int[blockCount];
+        int length = 0;
+        for (int i = 0; i < count; i++) {
+            if (i % BLOCK_SIZE == 0) {
+                offsets[i / BLOCK_SIZE] = length;
+                continue;
+            }
+            long delta = keys[i] - keys[i - 1];
+            while ((delta & ~0x7fL) != 0) {
+                data[length++] = (byte) ((delta & 0x7f) | 0x80);
+                delta >>>= 7;
+            }
+            data[length++] = (byte) delta;
+        }
+
+        ByteBuffer index = ByteBuffer.allocate(blockCount * INDEX_ENTRY_SIZE);
+        for (int block = 0; block < blockCount; block++) {
+            index.putLong(keys[block * BLOCK_SIZE]).putInt(offsets[block]);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(index.array(), 0, index.capacity());
+        crc.update(data, 0, length);
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+        out.writeInt(FILE_MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(count);
+        out.writeInt(BLOCK_SIZE);
+        out.writeInt(blockCount);
+        out.writeLong(version);
+        out.writeLong(crc.getValue());
+        out.write(index.array(), 0, index.capacity());
+        out.write(data, 0, length);
+        out.flush();
+    }
+
+    // Maps the file and checks its header and block offsets against the file size, so a
+    // truncated file is rejected before the first lookup rather than by the later checksum
+    static BinaryBlocklist load(File file) {
+        try (FileInputStream in = new FileInputStream(file)) {
+            FileChannel channel = in.getChannel();
+            long fileSize = channel.size();
+            if (fileSize < LEGACY_HEADER_SIZE || fileSize > Integer.MAX_VALUE) {
+                Log.w(TAG, "Ignoring " + file.getName() + " with invalid size " + fileSize);
+                return EMPTY;
+            }
+            // The mapping stays valid after the channel is closed
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            int format = buffer.getInt(4);
+            int headerSize = format == LEGACY_FORMAT_VERSION ? LEGACY_HEADER_SIZE : HEADER_SIZE;
+            int count = buffer.getInt(8);
+            int blockCount = buffer.getInt(16);
+            long dataStart = headerSize + (long) blockCount * INDEX_ENTRY_SIZE;
+            if (buffer.getInt(0) != FILE_MAGIC || (format != FORMAT_VERSION && format != LEGACY_FORMAT_VERSION)
+                    || fileSize < headerSize || buffer.getInt(12) != BLOCK_SIZE || count < 0
+                    || blockCount != (count + BLOCK_SIZE - 1) / BLOCK_SIZE || dataStart > fileSize) {
+                Log.w(TAG, "Ignoring " + file.getName() + " with unknown format");
+                return EMPTY;
+            }
+            // Offsets must rise and stay inside the data section; each block after the first
+            // number holds at least one byte per remaining number
+            long dataSize = fileSize - dataStart;
+            int previous = -1;
+            for (int block = 0; block < blockCount; block++) {
+                int offset = buffer.getInt(headerSize + block * INDEX_ENTRY_SIZE + 8);
+                if (offset <= previous || offset > dataSize) {
+                    Log.w(TAG, "Ignoring truncated " + file.getName());
+                    return EMPTY;
+                }
+                previous = offset;
+            }
+            int lastBlockNumbers = count - (blockCount - 1) * BLOCK_SIZE;
+            if (blockCount > 0 && dataSize - previous < lastBlockNumbers - 1) {
+                Log.w(TAG, "Ignoring truncated " + file.getName());
+                return EMPTY;
+            }
+            long version = format == FORMAT_VERSION ? buffer.getLong(20) : -1;
+            Log.d(TAG, "Mapped " + count + " numbers from " + file.getName());
+            return new BinaryBlocklist(buffer, count, blockCount, headerSize, version);
+        } catch (FileNotFoundException e) {
+            return EMPTY;
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to map " + file.getName() + ": " + e.getMessage());
+            return EMPTY;
+        }
+    }
+
+    private static AtomicFile indexFile(Context context) {
+        return new AtomicFile(new File(context.getFilesDir(), INDEX_FILE));
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.smsblocker;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Counts blocked messages per sender and per rule for each local day. SmsReceiver only bumps
+// in-memory counters; they are spread over stripes picked by the sender's hash, so concurrent
+// broadcasts rarely share a lock even when they hit the same rule. A flush drains every stripe
+// and adds the sums to the daily rollup tables in one transaction, a few seconds after the
+// first uncounted block or as soon as enough have piled up. Counts still in memory when the
+// process dies are lost; the rollups are for tuning and display, not accounting.
+public final class BlockStats {
+
+    private static final String TAG = "BlockStats";
+
+    static final int STRIPES = 16;
+    // Flush this long after the first block that is not in the tables yet...
+    static final long FLUSH_DELAY_MILLIS = 10_000;
+    // ...or as soon as this many blocks are waiting
+    static final int FLUSH_THRESHOLD = 256;
+    // Rollups older than this are pruned on the first flush of each day
+    static final int RETENTION_DAYS = 400;
+
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private static final BlockStats shared = new BlockStats(STRIPES);
+    private static final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "stats-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Stripe[] stripes;
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private volatile Context appContext;
+    private long lastPrunedDay = -1;
+
+    // Counters a flush takes out of memory, summed across stripes
+    static final class Rollup {
+        final Map<Key, Long> senders = new HashMap<>();
+        final Map<Key, Long> rules = new HashMap<>();
+
+        boolean isEmpty() {
+            return senders.isEmpty() && rules.isEmpty();
+        }
+
+        long blocked() {
+            long total = 0;
+            for (long count : rules.values()) {
+                total += count;
+            }
+            return total;
+        }
+    }
+
+    // A sender or rule on one day
+    static final class Key {
+        final long day;
+        final String name;
+
+        Key(long day, String name) {
+            this.day = day;
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return day == other.day && name.equals(other.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (int) (day ^ (day >>> 32)) + name.hashCode();
+        }
+    }
+
+    private static final class Stripe {
+        // long[1] cells so an increment does not allocate once the key exists
+        Map<Key, long[]> senders = new HashMap<>();
+        Map<Key, long[]> rules = new HashMap<>();
+    }
+
+    BlockStats(int stripeCount) {
+        if (Integer.bitCount(stripeCount) != 1) {
+            throw new IllegalArgumentException("stripe count must be a power of two: " + stripeCount);
+        }
+        stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    // The shared counters, flushed to the database that belongs to context
+    public static BlockStats get(Context context) {
+        if (shared.appContext == null) {
+            shared.appContext = context.getApplicationContext();
+        }
+        return shared;
+    }
+
+    // Local days since the epoch, so a day's rollup matches the user's calendar
+    static long dayOf(long millis) {
+        return (millis + TimeZone.getDefault().getOffset(millis)) / DAY_MILLIS;
+    }
+
+    // Counts count messages from the normalized sender, blocked by rule, and arranges a flush
+    public void recordBlocked(String normalizedSender, String rule, long receivedAt, int count) {
+        add(dayOf(receivedAt), normalizedSender, rule, count);
+        if (pending.addAndGet(count) >= FLUSH_THRESHOLD) {
+            flusher.execute(this::flushQuietly);
+        } else if (flushScheduled.compareAndSet(false, true)) {
+            flusher.schedule(this::flushQuietly, FLUSH_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    void add(long day, String normalizedSender, String rule, long count) {
+        Stripe stripe = stripes[spread(normalizedSender.hashCode()) & (stripes.length - 1)];
+        synchronized (stripe) {
+            increment(stripe.senders, new Key(day, normalizedSender), count);
+            increment(stripe.rules, new Key(day, rule), count);
+        }
+    }
+
+    // Swaps every stripe's counters out and sums them; recording carries on into fresh maps
+    Rollup drain() {
+        Rollup rollup = new Rollup();
+        for (Stripe stripe : stripes) {
+            Map<Key, long[]> senders;
+            Map<Key, long[]> rules;
+            synchronized (stripe) {
+                senders = stripe.senders;
+                rules = stripe.rules;
+                if (senders.isEmpty()) {
+                    continue;
+                }
+                stripe.senders = new HashMap<>();
+                stripe.rules = new HashMap<>();
+            }
+            merge(rollup.senders, senders);
+            merge(rollup.rules, rules);
+        }
+        return rollup;
+    }
+
+    // Writes everything counted so far; the stats screens call this before they query
+    public void flush() {
+        flushScheduled.set(false);
+        Rollup rollup = drain();
+        pending.addAndGet(-rollup.blocked());
+        Context context = appContext;
+        if (rollup.isEmpty() || context == null) {
+            return;
+        }
+        try {
+            long today = dayOf(System.currentTimeMillis());
+            boolean prune;
+            synchronized (this) {
+                prune = lastPrunedDay != today;
+                lastPrunedDay = today;
+            }
+            BlockedNumbersDatabaseHelper.getInstance(context)
+                    .addBlockStats(rollup, prune ? today - RETENTION_DAYS : -1);
+        } catch (RuntimeException e) {
+            // Put the counts back so the next flush retries them
+            for (Map.Entry<Key, Long> entry : rollup.senders.entrySet()) {
+                restore(entry.getKey(), entry.getValue(), true);
+            }
+            for (Map.Entry<Key, Long> entry : rollup.rules.entrySet()) {
+                restore(entry.getKey(), entry.getValue(), false);
+            }
+            pending.addAndGet(rollup.blocked());
+            throw e;
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Failed to flush blocking statistics", e);
+        }
+    }
+
+    private void restore(Key key, long count, boolean sender) {
+        Stripe stripe = stripes[spread(key.name.hashCode()) & (stripes.length - 1)];
+        synchronized (stripe) {
+            increment(sender ? stripe.senders : stripe.rules, key, count);
+        }
+    }
+
+    private static void increment(Map<Key, long[]> counters, Key key, long count) {
+        long[] cell = counters.get(key);
+        if (cell == null) {
+            counters.put(key, new long[]{count});
+        } else {
+            cell[0] += count;
+        }
+    }
+
+    private static void merge(Map<Key, Long> into, Map<Key, long[]> from) {
+        for (Map.Entry<Key, long[]> entry : from.entrySet()) {
+            Long sum = into.get(entry.getKey());
+            into.put(entry.getKey(), sum == null ? entry.getValue()[0] : sum + entry.getValue()[0]);
+        }
+    }
+
+    // Mixes the high bits in, as HashMap does, so similar numbers land on different stripes
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.smsblocker;
+
+import androidx.room.Dao;
+import androidx.room.Query;
+
+import java.util.List;
+
+// The daily rollups BlockStats flushes into. The stats screens read these rows only, never the
+// messages themselves.
+@Dao
+public interface BlockStatsDao {
+
+    // Upserts are an insert of a zero row plus an increment: ON CONFLICT DO UPDATE needs SQLite
+    // 3.24, which older devices do not ship
+    @Query("INSERT OR IGNORE INTO sender_daily_stats (day, sender, blocked) VALUES (:day, :sender, 0)")
+    void ensureSender(long day, String sender);
+
+    @Query("UPDATE sender_daily_stats SET blocked = blocked + :count WHERE day = :day AND sender = :sender")
+    int addToSender(long day, String sender, long count);
+
+    @Query("INSERT OR IGNORE INTO rule_daily_stats (day, rule, hits) VALUES (:day, :rule, 0)")
+    void ensureRule(long day, String rule);
+
+    @Query("UPDATE rule_daily_stats SET hits = hits + :count WHERE day = :day AND rule = :rule")
+    int addToRule(long day, String rule, long count);
+
+    @Query("SELECT sender AS name, SUM(blocked) AS count FROM sender_daily_stats WHERE day >= :fromDay " +
+            "GROUP BY sender ORDER BY count DESC LIMIT :limit")
+    List<Total> getTopSenders(long fromDay, int limit);
+
+    @Query("SELECT rule AS name, SUM(hits) AS count FROM rule_daily_stats WHERE day >= :fromDay " +
+            "GROUP BY rule ORDER BY count DESC")
+    List<Total> getRuleHits(long fromDay);
+
+    @Query("SELECT day, SUM(hits) AS count FROM rule_daily_stats WHERE day >= :fromDay GROUP BY day ORDER BY day ASC")
+    List<DayTotal> getDailyTotals(long fromDay);
+
+    @Query("DELETE FROM sender_daily_stats WHERE day < :day")
+    int deleteSendersBefore(long day);
+
+    @Query("DELETE FROM rule_daily_stats WHERE day < :day")
+    int deleteRulesBefore(long day);
+
+    // A sender or a rule with its count over the queried days
+    class Total {
+        public String name;
+        public long count;
+    }
+
+    class DayTotal {
+        public long day;
+        public long count;
+    }
+}
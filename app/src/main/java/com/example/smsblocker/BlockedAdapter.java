@@ -3,8 +3,8 @@ package com.example.smsblocker;
 import android.annotation.SuppressLint;
 import android.content.Context;
 import android.database.Cursor;
-import android.net.Uri;
-import android.provider.ContactsContract;
+import android.os.Handler;
+import android.os.Looper;
 import android.provider.Telephony;
 import android.text.InputType;
 import android.text.format.DateFormat;
@@ -19,22 +19,49 @@ import android.widget.Toast;
 import androidx.appcompat.app.AlertDialog;
 import androidx.recyclerview.widget.RecyclerView;
 
+import java.util.HashMap;
 import java.util.List;
-import java.util.Iterator;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 public class BlockedAdapter extends RecyclerView.Adapter<BlockedAdapter.ViewHolder> {
     private final Context context;
     private List<String> blockedNumbers;
     private final OnBlockedListener onBlockedListener;
+    // phone number -> its latest message, filled in as rows are first bound
+    private final Map<String, LastMessage> lastMessages = new HashMap<>();
+    // phone number -> the load running for its row
+    private final Map<String, ScreenLoader.Handle> pendingLoads = new HashMap<>();
 
 
     public void updateBlockedNumbers(List<String> newBlockedNumbers) {
         this.blockedNumbers.clear();
         this.blockedNumbers.addAll(newBlockedNumbers);
+        // A full reload reads the last messages again too
+        lastMessages.clear();
         notifyDataSetChanged();
     }
 
+    // Applies blocklist changes in place. Changes the list already reflects (e.g. committed while
+    // it was being loaded) are skipped.
+    public void applyChanges(List<BlocklistChangeFeed.Change> changes) {
+        for (BlocklistChangeFeed.Change change : changes) {
+            if (change.type == BlocklistChangeFeed.Type.ADDED) {
+                if (change.phoneNumber != null && !blockedNumbers.contains(change.phoneNumber)) {
+                    blockedNumbers.add(0, change.phoneNumber);  // newest first, like the loaded list
+                    notifyItemInserted(0);
+                }
+            } else if (change.type == BlocklistChangeFeed.Type.REMOVED) {
+                int index = blockedNumbers.indexOf(change.phoneNumber);
+                if (index >= 0) {
+                    blockedNumbers.remove(index);
+                    notifyItemRemoved(index);
+                }
+            }
+            // Rows do not show the unblock time, so EXPIRY_CHANGED needs no rebind
+        }
+    }
+
     public interface OnBlockedListener {
         void onUnblock(String phoneNumber);
         void onSetRetentionPeriod(String phoneNumber, long retentionMillis);
@@ -58,7 +85,7 @@ public class BlockedAdapter extends RecyclerView.Adapter<BlockedAdapter.ViewHold
         String phoneNumber = blockedNumbers.get(position);
 
         // ✅ Fetch contact name if available
-        String contactName = getContactName(context, phoneNumber);
+        String contactName = ContactNameCache.get(context).nameFor(phoneNumber);
 
         // ✅ If a contact name is found, display it. Otherwise, show the number.
         if (contactName != null) {
@@ -67,31 +94,33 @@ public class BlockedAdapter extends RecyclerView.Adapter<BlockedAdapter.ViewHold
             holder.senderName.setText(phoneNumber);
         }
 
-        // ✅ Fetch last message for the blocked number
-        String[] projection = {Telephony.Sms.ADDRESS, Telephony.Sms.BODY, Telephony.Sms.DATE};
-        String selection = Telephony.Sms.ADDRESS + " = ?";
-        String[] selectionArgs = {phoneNumber};
-        Cursor cursor = context.getContentResolver().query(
-                Telephony.Sms.CONTENT_URI, projection, selection, selectionArgs, Telephony.Sms.DATE + " DESC");
-
-        if (cursor != null && cursor.moveToFirst()) {
-            @SuppressLint("Range") String lastMessageText = cursor.getString(cursor.getColumnIndex(Telephony.Sms.BODY));
-            @SuppressLint("Range") long messageDate = cursor.getLong(cursor.getColumnIndex(Telephony.Sms.DATE));
-
-
-            String formattedDate = DateFormat.format("dd-MM-yyyy hh:mm a", messageDate).toString();
-
+        if (PhoneNumberNormalizer.isPrefixRule(phoneNumber)) {
+            // Prefix rules cover a whole range of senders, there is no single conversation to show
+            holder.lastMessage.setText("Blocks every number starting with " + phoneNumber.substring(0, phoneNumber.length() - 1));
+            holder.messageTime.setText("N/A");
+            holder.itemView.setOnClickListener(null);
+            holder.itemView.setOnLongClickListener(v -> {
+                showUnblockOptionsDialog(phoneNumber);
+                return true;
+            });
+            return;
+        }
 
-            holder.lastMessage.setText(lastMessageText);
-            holder.messageTime.setText(formattedDate);
-            cursor.close(); // Close cursor to prevent memory leaks
+        // ✅ Show the last message for the blocked number, read off the main thread on first bind
+        LastMessage lastMessage = lastMessages.get(phoneNumber);
+        if (lastMessage == null) {
+            holder.lastMessage.setText("Loading…");
+            holder.messageTime.setText("");
+            loadLastMessage(phoneNumber);
+        } else if (lastMessage.body != null) {
+            holder.lastMessage.setText(lastMessage.body);
+            holder.messageTime.setText(DateFormat.format("dd-MM-yyyy hh:mm a", lastMessage.date).toString());
         } else {
             // If no message found, display "No messages"
             holder.lastMessage.setText("No messages");
             holder.messageTime.setText("N/A");
         }
 
-
         holder.itemView.setOnClickListener(v -> onBlockedListener.onChat(phoneNumber));
         holder.itemView.setOnLongClickListener(v -> {
             showUnblockOptionsDialog(phoneNumber);
@@ -99,15 +128,66 @@ public class BlockedAdapter extends RecyclerView.Adapter<BlockedAdapter.ViewHold
         });
     }
 
-    private String getContactName(Context context, String phoneNumber) {
-        Uri uri = Uri.withAppendedPath(ContactsContract.PhoneLookup.CONTENT_FILTER_URI, Uri.encode(phoneNumber));
-        String[] projection = new String[]{ContactsContract.PhoneLookup.DISPLAY_NAME};
-        try (Cursor cursor = context.getContentResolver().query(uri, projection, null, null, null)) {
+    // One provider read per number, shared by every later bind of its row
+    private void loadLastMessage(String phoneNumber) {
+        if (pendingLoads.containsKey(phoneNumber)) {
+            return;
+        }
+        final Context appContext = context.getApplicationContext();
+        pendingLoads.put(phoneNumber, ScreenLoader.shared().load("blocked-last-message:" + phoneNumber,
+                () -> queryLastMessage(appContext, phoneNumber),
+                new ScreenLoader.Callback<LastMessage>() {
+                    @Override
+                    public void onLoaded(LastMessage result) {
+                        pendingLoads.remove(phoneNumber);
+                        lastMessages.put(phoneNumber, result);
+                        int index = blockedNumbers.indexOf(phoneNumber);
+                        if (index >= 0) {
+                            notifyItemChanged(index);
+                        }
+                    }
+
+                    @Override
+                    public void onFailed(Exception e) {
+                        // Not cached, so the next bind of the row tries again
+                        pendingLoads.remove(phoneNumber);
+                    }
+                }));
+    }
+
+    // Runs on a loader thread
+    private static LastMessage queryLastMessage(Context context, String phoneNumber) {
+        String[] projection = {Telephony.Sms.BODY, Telephony.Sms.DATE};
+        long threadId = SmsThreads.threadIdFor(context, phoneNumber);
+        String selection = threadId != -1 ? Telephony.Sms.THREAD_ID + " = ?" : Telephony.Sms.ADDRESS + " = ?";
+        String[] selectionArgs = {threadId != -1 ? String.valueOf(threadId) : phoneNumber};
+        try (Cursor cursor = context.getContentResolver().query(Telephony.Sms.CONTENT_URI, projection,
+                selection, selectionArgs, Telephony.Sms.DATE + " DESC LIMIT 1")) {
             if (cursor != null && cursor.moveToFirst()) {
-                return cursor.getString(cursor.getColumnIndexOrThrow(ContactsContract.PhoneLookup.DISPLAY_NAME));
+                @SuppressLint("Range") String body = cursor.getString(cursor.getColumnIndex(Telephony.Sms.BODY));
+                @SuppressLint("Range") long date = cursor.getLong(cursor.getColumnIndex(Telephony.Sms.DATE));
+                return new LastMessage(body, date);
             }
         }
-        return null; // Return null if no contact found
+        return new LastMessage(null, 0);
+    }
+
+    // Rebinds the rows once an edited address book has been reloaded
+    private final ContactNameCache.Listener contactNamesListener = () ->
+            new Handler(Looper.getMainLooper()).post(this::notifyDataSetChanged);
+
+    @Override
+    public void onAttachedToRecyclerView(RecyclerView recyclerView) {
+        ContactNameCache.get(context).addListener(contactNamesListener);
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(RecyclerView recyclerView) {
+        ContactNameCache.get(context).removeListener(contactNamesListener);
+        for (ScreenLoader.Handle handle : pendingLoads.values()) {
+            handle.cancel();
+        }
+        pendingLoads.clear();
     }
 
 
@@ -152,7 +232,7 @@ public class BlockedAdapter extends RecyclerView.Adapter<BlockedAdapter.ViewHold
                         // Convert days to milliseconds correctly
                         long retentionMillis = System.currentTimeMillis() + TimeUnit.DAYS.toMillis(retentionDays);
 
-                        BlockedNumbersDatabaseHelper dbHelper = new BlockedNumbersDatabaseHelper(context);
+                        BlockedNumbersDatabaseHelper dbHelper = BlockedNumbersDatabaseHelper.getInstance(context);
                         boolean success = dbHelper.unblockNumber(phoneNumber, retentionMillis);
 
                         if (success) {
@@ -179,13 +259,21 @@ public class BlockedAdapter extends RecyclerView.Adapter<BlockedAdapter.ViewHold
     }
 
     public void removeBlockedNumber(String phoneNumber) {
-        Iterator<String> iterator = blockedNumbers.iterator();
-        while (iterator.hasNext()) {
-            if (iterator.next().equals(phoneNumber)) {
-                iterator.remove();
-                notifyDataSetChanged(); // Refresh the UI
-                break;
-            }
+        int index = blockedNumbers.indexOf(phoneNumber);
+        if (index >= 0) {
+            blockedNumbers.remove(index);
+            notifyItemRemoved(index);
+        }
+    }
+
+    // body is null when the number has no messages
+    private static final class LastMessage {
+        final String body;
+        final long date;
+
+        LastMessage(String body, long date) {
+            this.body = body;
+            this.date = date;
         }
     }
 
@@ -5,9 +5,7 @@ import android.app.Activity;
 import android.app.AlertDialog;
 import android.content.ContentResolver;
 import android.content.ContentValues;
-import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Build;
@@ -53,6 +51,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.regex.PatternSyntaxException;
 
 public class BlockedFragment extends Fragment {
 
@@ -60,6 +59,17 @@ public class BlockedFragment extends Fragment {
     private BlockedAdapter blockedAdapter;
     private BlockedNumbersDatabaseHelper blockedNumbersDatabaseHelper;
     private static final String TAG = "BlockedFragment";
+    // Change feed version the list reflects, -1 until the first full load
+    private long loadedVersion = -1;
+
+    // Whoever changed the blocklist (this screen, the inbox, the expiry timer), only the change
+    // itself is applied to the list
+    private final BlocklistChangeFeed.Listener blocklistListener = changes -> {
+        Activity activity = getActivity();
+        if (activity != null) {
+            activity.runOnUiThread(this::catchUpWithBlocklist);
+        }
+    };
 
     // Register the file picker activity launcher
     private final ActivityResultLauncher<Intent> filePickerLauncher = registerForActivityResult(
@@ -79,11 +89,37 @@ public class BlockedFragment extends Fragment {
     @Override
     public void onResume() {
         super.onResume();
-        refreshBlockedList();  // Refresh the list to make sure the data is updated
+        catchUpWithBlocklist();
+    }
+
+    @Override
+    public void onDestroyView() {
+        BlocklistChangeFeed.shared().removeListener(blocklistListener);
+        loadedVersion = -1;
+        super.onDestroyView();
+    }
+
+    // Applies what changed since the list was loaded; reloads only if the feed no longer has it
+    private void catchUpWithBlocklist() {
+        if (!isResumed() || blockedAdapter == null) {
+            return;  // onResume catches up
+        }
+        BlocklistChangeFeed feed = BlocklistChangeFeed.shared();
+        List<BlocklistChangeFeed.Change> changes = feed.changesSince(loadedVersion);
+        if (changes == null) {
+            refreshBlockedList();
+        } else if (!changes.isEmpty()) {
+            blockedAdapter.applyChanges(changes);
+            loadedVersion = changes.get(changes.size() - 1).version;
+        }
     }
 
     private void refreshBlockedList() {
+        // Read the version first: changes committed during the query are applied again later,
+        // which applyChanges tolerates
+        long version = BlocklistChangeFeed.shared().version();
         Cursor cursor = blockedNumbersDatabaseHelper.getBlockedNumbers();
+        loadedVersion = version;
 
         if (cursor != null && cursor.getCount() > 0) {
             List<String> blockedNumbers = new ArrayList<>();
@@ -100,10 +136,12 @@ public class BlockedFragment extends Fragment {
 
             if (blockedAdapter != null) {
                 blockedAdapter.updateBlockedNumbers(blockedNumbers);
-                blockedAdapter.notifyDataSetChanged();
             }
 
         } else {
+            if (blockedAdapter != null) {
+                blockedAdapter.updateBlockedNumbers(Collections.<String>emptyList());
+            }
             Toast.makeText(getContext(), "Block list is empty", Toast.LENGTH_SHORT).show();
         }
 
@@ -123,7 +161,12 @@ public class BlockedFragment extends Fragment {
         Button btnImportBlockedList = view.findViewById(R.id.btnImportBlockedList);
         FloatingActionButton fab =  view.findViewById(R.id.fab);
         fab.setOnClickListener(v -> showBlockNameDialog());
-        blockedNumbersDatabaseHelper = new BlockedNumbersDatabaseHelper(getContext());
+        fab.setOnLongClickListener(v -> {
+            showKeywordRulesDialog();
+            return true;
+        });
+        blockedNumbersDatabaseHelper = BlockedNumbersDatabaseHelper.getInstance(getContext());
+        BlocklistChangeFeed.shared().addListener(blocklistListener);
 
         blockedAdapter = new BlockedAdapter(getContext(), new ArrayList<>(), new BlockedAdapter.OnBlockedListener() {
             @Override
@@ -182,13 +225,69 @@ public class BlockedFragment extends Fragment {
                 blockedNumbersDatabaseHelper.blockNumber(blockNumber);
                 Toast.makeText(requireContext(), "Blocked: " + blockNumber, Toast.LENGTH_SHORT).show();
                 dialog.dismiss();
-                refreshBlockedList();
             } else {
                 etBlockName.setError("Enter Number or Name");
             }
         });
     }
 
+    // Lists the keyword and regex rules (tap one to remove it) and lets the user add a new one.
+    // Plain text is a keyword, "/pattern/" is a body regex and "from /pattern/" a sender regex.
+    private void showKeywordRulesDialog() {
+        List<String> keywords = blockedNumbersDatabaseHelper.getKeywordRules();
+        List<RegexRule> regexRules = blockedNumbersDatabaseHelper.getRegexRules();
+        String[] items = new String[keywords.size() + regexRules.size()];
+        for (int i = 0; i < keywords.size(); i++) {
+            items[i] = keywords.get(i);
+        }
+        for (int i = 0; i < regexRules.size(); i++) {
+            items[keywords.size() + i] = regexRules.get(i).getLabel();
+        }
+
+        EditText keywordInput = new EditText(requireContext());
+        keywordInput.setHint("Keyword, /regex/ or from /regex/");
+
+        new AlertDialog.Builder(requireContext())
+                .setTitle("Message Rules")
+                .setItems(items, (dialog, which) -> {
+                    if (which < keywords.size()) {
+                        blockedNumbersDatabaseHelper.removeKeywordRule(keywords.get(which));
+                    } else {
+                        blockedNumbersDatabaseHelper.removeRegexRule(regexRules.get(which - keywords.size()).getId());
+                    }
+                    Toast.makeText(getContext(), "Removed rule: " + items[which], Toast.LENGTH_SHORT).show();
+                })
+                .setView(keywordInput)
+                .setPositiveButton("Add", (dialog, which) -> addMessageRule(keywordInput.getText().toString().trim()))
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    private void addMessageRule(String input) {
+        String target = RegexRule.TARGET_BODY;
+        String rule = input;
+        if (rule.startsWith("from ")) {
+            target = RegexRule.TARGET_SENDER;
+            rule = rule.substring("from ".length()).trim();
+        }
+
+        if (rule.length() > 2 && rule.startsWith("/") && rule.endsWith("/")) {
+            String pattern = rule.substring(1, rule.length() - 1);
+            try {
+                blockedNumbersDatabaseHelper.addRegexRule(pattern, target, 0);
+                Toast.makeText(getContext(), "Added rule: " + input, Toast.LENGTH_SHORT).show();
+            } catch (PatternSyntaxException e) {
+                Toast.makeText(getContext(), "Invalid pattern: " + e.getDescription(), Toast.LENGTH_LONG).show();
+            }
+        } else if (input.isEmpty()) {
+            Toast.makeText(getContext(), "Enter a keyword", Toast.LENGTH_SHORT).show();
+        } else if (blockedNumbersDatabaseHelper.addKeywordRule(input)) {
+            Toast.makeText(getContext(), "Blocking messages containing: " + input, Toast.LENGTH_SHORT).show();
+        } else {
+            Toast.makeText(getContext(), "Keyword already blocked", Toast.LENGTH_SHORT).show();
+        }
+    }
+
     private List<String> getContacts() {
         List<String> contactList = new ArrayList<>();
         Map<String, String> contactMap = new HashMap<>(); // Stores <Number, Name>
@@ -225,20 +324,11 @@ public class BlockedFragment extends Fragment {
 
     private void unblockSender(String phoneNumber) {
         // Remove the sender from the blocked numbers in the database
-        BlockedNumbersDatabaseHelper blockedNumbersDatabaseHelper = new BlockedNumbersDatabaseHelper(getContext());
+        BlockedNumbersDatabaseHelper blockedNumbersDatabaseHelper = BlockedNumbersDatabaseHelper.getInstance(getContext());
         blockedNumbersDatabaseHelper.removeBlockedNumber(phoneNumber);
 
-        // Also remove from SharedPreferences
-        SharedPreferences prefs = getContext().getSharedPreferences("BlockedSMS", Context.MODE_PRIVATE);
-        SharedPreferences.Editor editor = prefs.edit();
-        editor.remove(phoneNumber); // Remove the block status for this phone number
-        editor.apply();
-
         // Show a toast message
         Toast.makeText(getContext(), "Unblocked: " + phoneNumber, Toast.LENGTH_SHORT).show();
-
-        // Refresh the UI to reflect changes
-        refreshBlockedList();  // <-- ADD THIS LINE
     }
 
 
@@ -275,18 +365,18 @@ public class BlockedFragment extends Fragment {
             JSONArray jsonArray = new JSONArray(jsonContent.toString());
 
             // Import each phone number from the JSON without setting a retention period
+            List<String> phoneNumbers = new ArrayList<>(jsonArray.length());
             for (int i = 0; i < jsonArray.length(); i++) {
                 JSONObject jsonObject = jsonArray.getJSONObject(i);
-                String phoneNumber = jsonObject.optString("PhoneNumber", "Unknown");
-
-                // Directly block the number without retention period
-                blockedNumbersDatabaseHelper.blockNumber(phoneNumber);
+                phoneNumbers.add(jsonObject.optString("PhoneNumber", "Unknown"));
             }
 
-            getActivity().runOnUiThread(() -> {
-                refreshBlockedList();
-                Toast.makeText(getContext(), "Import Successful!", Toast.LENGTH_LONG).show();
-            });
+            // Block them all in one transaction, however many there are, so every imported number
+            // can be listed, exported and unblocked; large lists get their lookup index rebuilt
+            blockedNumbersDatabaseHelper.blockNumbers(phoneNumbers);
+
+            getActivity().runOnUiThread(() ->
+                    Toast.makeText(getContext(), "Import Successful!", Toast.LENGTH_LONG).show());
 
         } catch (IOException | JSONException e) {
             Log.e(TAG, "Import Failed: " + e.getMessage());
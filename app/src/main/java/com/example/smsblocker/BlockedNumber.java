@@ -0,0 +1,67 @@
+package com.example.smsblocker;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+// One row of the user's blocklist
+@Entity(tableName = BlockedNumber.TABLE,
+        indices = {
+                @Index(value = "normalized_number", name = "idx_blocked_numbers_normalized_number", unique = true),
+                @Index(value = "unblock_time", name = "idx_blocked_numbers_unblock_time")
+        })
+public class BlockedNumber {
+
+    public static final String TABLE = "blocked_numbers";
+
+    @PrimaryKey(autoGenerate = true)
+    @ColumnInfo(name = "_id")
+    private final long id;
+
+    @NonNull
+    @ColumnInfo(name = "phone_number")
+    private final String phoneNumber;
+
+    // 0 means blocked permanently
+    @ColumnInfo(name = "unblock_time", defaultValue = "0")
+    private final long unblockTime;
+
+    @ColumnInfo(name = "is_retention_set", defaultValue = "0")
+    private final boolean retentionSet;
+
+    // Canonical lookup key, see PhoneNumberNormalizer
+    @ColumnInfo(name = "normalized_number")
+    private final String normalizedNumber;
+
+    public BlockedNumber(long id, @NonNull String phoneNumber, long unblockTime, boolean retentionSet,
+                         String normalizedNumber) {
+        this.id = id;
+        this.phoneNumber = phoneNumber;
+        this.unblockTime = unblockTime;
+        this.retentionSet = retentionSet;
+        this.normalizedNumber = normalizedNumber;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    @NonNull
+    public String getPhoneNumber() {
+        return phoneNumber;
+    }
+
+    public long getUnblockTime() {
+        return unblockTime;
+    }
+
+    public boolean isRetentionSet() {
+        return retentionSet;
+    }
+
+    public String getNormalizedNumber() {
+        return normalizedNumber;
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.smsblocker;
+
+import android.database.Cursor;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import java.util.List;
+
+@Dao
+public interface BlockedNumberDao {
+
+    // Returns the new row id, or -1 if the normalized number is already blocked
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    long insert(BlockedNumber blockedNumber);
+
+    // Blocks an existing number for good again; returns the rows updated, 0 if it already was
+    @Query("UPDATE blocked_numbers SET unblock_time = 0, is_retention_set = 0 WHERE normalized_number = :normalizedNumber " +
+            "AND (unblock_time != 0 OR is_retention_set != 0)")
+    int makePermanent(String normalizedNumber);
+
+    @Query("UPDATE blocked_numbers SET unblock_time = :unblockTime, is_retention_set = 1 WHERE normalized_number = :normalizedNumber")
+    int setUnblockTime(String normalizedNumber, long unblockTime);
+
+    @Query("SELECT * FROM blocked_numbers WHERE normalized_number = :normalizedNumber")
+    BlockedNumber find(String normalizedNumber);
+
+    @Query("SELECT EXISTS (SELECT 1 FROM blocked_numbers WHERE normalized_number = :normalizedNumber)")
+    boolean contains(String normalizedNumber);
+
+    // Blocked for good, or until a time that has not come yet
+    @Query("SELECT EXISTS (SELECT 1 FROM blocked_numbers WHERE normalized_number = :normalizedNumber " +
+            "AND (unblock_time = 0 OR unblock_time > :now))")
+    boolean isActive(String normalizedNumber, long now);
+
+    // The unblock time of an active block (0 = permanent), or null if there is none
+    @Query("SELECT unblock_time FROM blocked_numbers WHERE normalized_number = :normalizedNumber " +
+            "AND (unblock_time = 0 OR unblock_time > :now)")
+    Long activeUnblockTime(String normalizedNumber, long now);
+
+    @Query("SELECT * FROM blocked_numbers")
+    Cursor getAll();
+
+    // Only the columns BlocklistSnapshot needs
+    @Query("SELECT normalized_number, unblock_time FROM blocked_numbers")
+    Cursor getUnblockTimes();
+
+    @Query("SELECT * FROM blocked_numbers WHERE unblock_time > 0")
+    List<BlockedNumber> getTimedBlocks();
+
+    @Query("DELETE FROM blocked_numbers WHERE normalized_number = :normalizedNumber")
+    int delete(String normalizedNumber);
+
+    // See BlocklistVersion
+    @Query("SELECT COALESCE(MAX(version), 0) FROM blocklist_version")
+    long version();
+
+    // Called inside the transaction that changes blocked_numbers
+    @Query("INSERT OR REPLACE INTO blocklist_version (id, version) SELECT 1, COALESCE(MAX(version), 0) + 1 FROM blocklist_version")
+    void bumpVersion();
+
+    // A number blocked again in the meantime has a new unblock time and is left alone
+    @Query("DELETE FROM blocked_numbers WHERE normalized_number = :normalizedNumber AND unblock_time > 0 AND unblock_time <= :now")
+    int deleteIfExpired(String normalizedNumber, long now);
+}
@@ -1,171 +1,445 @@
 package com.example.smsblocker;
 
-import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
-import android.database.sqlite.SQLiteDatabase;
 import android.util.Log;
 
-import java.util.concurrent.TimeUnit;
+import androidx.annotation.NonNull;
+import androidx.room.InvalidationTracker;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class BlockedNumbersDatabaseHelper {
 
-    private static final String DATABASE_NAME = "sms_blocker.db";
-    private static final int DATABASE_VERSION = 3;  // Incremented version for schema changes
-    private static final String TABLE_BLOCKED_NUMBERS = "blocked_numbers";
-    private static final String COLUMN_ID = "_id";
-    private static final String COLUMN_PHONE_NUMBER = "phone_number";
-    private static final String COLUMN_UNBLOCK_TIME = "unblock_time";  // Column for retention period
+    // Bumped after every write so cached decisions (DecisionCache) can be invalidated without a scan
+    private static final AtomicLong dataVersion = new AtomicLong();
+
+    // One connection pool per process; every write goes through the single writer thread
+    private static final Object instanceLock = new Object();
+    private static volatile BlockedNumbersDatabaseHelper instance;
+    private static final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "sms-db-writer");
+        writerThread = thread;
+        return thread;
+    });
+    private static volatile Thread writerThread;
+
+    private final SmsBlockerDatabase database;
+    private final BlockedNumberDao blockedNumbers;
+    private final KeywordRuleDao keywordRules;
+    private final RegexRuleDao regexRules;
+    private final BlockStatsDao blockStats;
+    private final Context context;
+    private final PhoneNumberNormalizer normalizer;
+
+    private BlockedNumbersDatabaseHelper(Context context) {
+        this.context = context.getApplicationContext();
+        this.normalizer = PhoneNumberNormalizer.forContext(this.context);
+        database = SmsBlockerDatabase.create(this.context, normalizer);
+        database.getOpenHelper().getWritableDatabase();  // Open (and migrate) now rather than on first query
+        blockedNumbers = database.blockedNumbers();
+        keywordRules = database.keywordRules();
+        regexRules = database.regexRules();
+        blockStats = database.blockStats();
+
+        // Room's triggers only fire for rows that really changed, so the compiled rule matchers
+        // are rebuilt after a real change to their table and never for a no-op write
+        database.getInvalidationTracker().addObserver(new InvalidationTracker.Observer(KeywordRule.TABLE) {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                KeywordFilter.rebuildAsync(BlockedNumbersDatabaseHelper.this.context);
+            }
+        });
+        database.getInvalidationTracker().addObserver(new InvalidationTracker.Observer(RegexRule.TABLE) {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                RegexRuleEngine.rebuildAsync(BlockedNumbersDatabaseHelper.this.context);
+            }
+        });
+    }
 
-    private SQLiteDatabase database;
-    private BlockedNumbersSQLiteOpenHelper dbHelper;
+    public static BlockedNumbersDatabaseHelper getInstance(Context context) {
+        Context appContext = context.getApplicationContext();
+        BlockedNumbersDatabaseHelper helper = instance;
+        // A different Application only happens between Robolectric tests
+        if (helper != null && helper.context == appContext) {
+            return helper;
+        }
+        synchronized (instanceLock) {
+            if (instance == null || instance.context != appContext) {
+                instance = new BlockedNumbersDatabaseHelper(appContext);
+                // Published first: the migration's writes reach code that calls getInstance again
+                LegacyBlocklistMigration.migrate(appContext, instance);
+            }
+            return instance;
+        }
+    }
 
-    public BlockedNumbersDatabaseHelper(Context context) {
-        dbHelper = new BlockedNumbersSQLiteOpenHelper(context);
-        this.database = dbHelper.getWritableDatabase();  // Open the database in writable mode
+    // Runs the write on the writer thread and waits for its result, so writes never contend
+    private <T> T write(Callable<T> task) {
+        try {
+            if (Thread.currentThread() == writerThread) {
+                return task.call();
+            }
+            return writer.submit(task).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a database write", e);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
     }
 
     // Method to block a phone number (without retention period)
     public void blockNumber(String phoneNumber) {
-        ContentValues values = new ContentValues();
-        values.put(COLUMN_PHONE_NUMBER, phoneNumber);  // Store phone number
-        values.put(COLUMN_UNBLOCK_TIME, 0); // Default unblock time as 0
-
-        long rowId = database.insert(TABLE_BLOCKED_NUMBERS, null, values);
-
-        // Log the insert operation result
-        if (rowId != -1) {
-            Log.d("Database", "Inserted blocked number: " + phoneNumber);
+        if (blockNumbers(Collections.singletonList(phoneNumber)) > 0) {
+            Log.d("Database", "Blocked number: " + phoneNumber);
         } else {
-            Log.e("Database", "Failed to insert blocked number: " + phoneNumber);
+            Log.d("Database", "Number already blocked for good: " + phoneNumber);
         }
     }
 
+    // Block many numbers at once (e.g. an imported spam list) in a single transaction. Numbers that
+    // are already in the table are updated in place (and lose any retention period) instead of
+    // being inserted again. Returns how many numbers were inserted or updated; a number already
+    // blocked for good changes nothing and is neither counted nor published.
+    //
+    // A batch larger than the change feed keeps is not collected number by number: the snapshot
+    // (and with it the binary index) is rebuilt by streaming the table, and the feed publishes
+    // one RESET, so an import of a million numbers holds no per-number maps or change objects.
+    public int blockNumbers(Collection<String> phoneNumbers) {
+        final boolean bulk = phoneNumbers.size() > BlocklistChangeFeed.HISTORY_SIZE;
+        return write(() -> {
+            Map<String, Long> inserted = new HashMap<>();
+            // Timed blocks made permanent; there are only ever a few
+            Map<String, Long> updated = new HashMap<>();
+            BlocklistChangeFeed.Batch changes = new BlocklistChangeFeed.Batch();
+            // No ON CONFLICT DO UPDATE before API 30, so upsert as INSERT OR IGNORE, then an UPDATE
+            // that only matches a timed block
+            int upserted = database.runInTransaction(() -> {
+                int count = 0;
+                for (String phoneNumber : phoneNumbers) {
+                    String normalizedNumber = normalizer.normalize(phoneNumber);
+                    if (normalizedNumber == null) {
+                        continue;
+                    }
+                    if (blockedNumbers.insert(new BlockedNumber(0, phoneNumber, 0, false, normalizedNumber)) != -1) {
+                        count++;
+                        if (!bulk) {
+                            inserted.put(normalizedNumber, 0L);
+                        }
+                        changes.added(normalizedNumber, phoneNumber, 0);
+                    } else if (blockedNumbers.makePermanent(normalizedNumber) > 0) {
+                        count++;
+                        updated.put(normalizedNumber, 0L);
+                        changes.expiryChanged(normalizedNumber, null, 0);
+                    }
+                }
+                if (count > 0) {
+                    blockedNumbers.bumpVersion();
+                }
+                return count;
+            });
+
+            Log.d("Database", "Upserted " + upserted + " blocked numbers");
+            if (upserted > 0) {
+                if (bulk) {
+                    refreshSnapshot();
+                } else {
+                    BlocklistSnapshot.onNumbersAdded(context, inserted, updated, blockedNumbers.version());
+                }
+                for (String normalizedNumber : updated.keySet()) {
+                    ExpiryScheduler.schedule(context, normalizedNumber, 0);  // blocked for good again
+                }
+                BlocklistChangeFeed.shared().publish(changes);
+                bumpDataVersion();
+            }
+            return upserted;
+        });
+    }
+
     // Method to unblock a number (set unblock time)
     public boolean unblockNumber(String phoneNumber, long unblockTime) {
-        long currentTime = System.currentTimeMillis();
-
-        // Check if a retention period is already set
-        Cursor cursor = database.rawQuery(
-                "SELECT is_retention_set, " + COLUMN_UNBLOCK_TIME + " FROM " + TABLE_BLOCKED_NUMBERS +
-                        " WHERE phone_number = ?",
-                new String[]{phoneNumber}
-        );
-
-        boolean canUpdate = true;
-
-        if (cursor != null && cursor.moveToFirst()) {
-            int isSet = cursor.getInt(0);
-            long existingUnblockTime = cursor.getLong(1);
+        return write(() -> {
+            long currentTime = System.currentTimeMillis();
+            String normalizedNumber = normalizer.normalize(phoneNumber);
+
+            // Do not update if a retention period is already set and still active
+            BlockedNumber existing = blockedNumbers.find(normalizedNumber);
+            if (existing != null && existing.isRetentionSet() && existing.getUnblockTime() > currentTime) {
+                Log.d("Database", "Retention period is already active, cannot update.");
+                return false;
+            }
 
-            // If retention period has expired, allow updating
-            if (isSet == 1 && existingUnblockTime > currentTime) {
-                canUpdate = false; // Do not update if time is still active
+            // Update the retention period in the database
+            int rowsAffected = database.runInTransaction(() -> {
+                int updated = blockedNumbers.setUnblockTime(normalizedNumber, unblockTime);
+                if (updated > 0) {
+                    blockedNumbers.bumpVersion();
+                }
+                return updated;
+            });
+
+            if (rowsAffected > 0) {
+                BlocklistSnapshot.onNumbersAdded(context, Collections.<String, Long>emptyMap(),
+                        Collections.singletonMap(normalizedNumber, unblockTime), blockedNumbers.version());
+                ExpiryScheduler.schedule(context, normalizedNumber, unblockTime);
+                BlocklistChangeFeed.Batch changes = new BlocklistChangeFeed.Batch();
+                changes.expiryChanged(normalizedNumber, existing.getPhoneNumber(), unblockTime);
+                BlocklistChangeFeed.shared().publish(changes);
+                bumpDataVersion();
             }
-            cursor.close();
-        }
+            return rowsAffected > 0;
+        });
+    }
 
-        if (!canUpdate) {
-            Log.d("Database", "Retention period is already active, cannot update.");
-            return false;
-        }
 
-        // Update the retention period in the database
-        ContentValues values = new ContentValues();
-        values.put(COLUMN_UNBLOCK_TIME, unblockTime);
-        values.put("is_retention_set", 1);  // Mark as set
+    // Check if a phone number is blocked
+    public boolean isBlocked(String phoneNumber) {
+        // ExpiryScheduler deletes expired rows, but its alarm can run late while the device dozes
+        boolean isBlocked = blockedNumbers.isActive(normalizer.normalize(phoneNumber), System.currentTimeMillis());
+        Log.d("Database", "Phone number " + phoneNumber + " isBlocked: " + isBlocked);
+        return isBlocked;
+    }
 
-        int rowsAffected = database.update(TABLE_BLOCKED_NUMBERS, values,
-                COLUMN_PHONE_NUMBER + "=?", new String[]{phoneNumber});
+    // When the block on an already normalized number ends: 0 if it is permanent, -1 if there is
+    // no active block, for BlocklistSnapshot.blockedUntil
+    long blockedUntil(String normalizedNumber, long now) {
+        Long unblockTime = blockedNumbers.activeUnblockTime(normalizedNumber, now);
+        return unblockTime != null ? unblockTime : PrefixTrie.NOT_BLOCKED;
+    }
 
-        return rowsAffected > 0;
+    // Get all currently blocked numbers (ExpiryScheduler has already removed expired ones)
+    public Cursor getBlockedNumbers() {
+        return blockedNumbers.getAll();
     }
 
+    // Remove a blocked number (unblock it)
+    public void removeBlockedNumber(String phoneNumber) {
+        write(() -> {
+            String normalizedNumber = normalizer.normalize(phoneNumber);
+            BlockedNumber existing = blockedNumbers.find(normalizedNumber);
+            int rowsDeleted = existing == null ? 0 : database.runInTransaction(() -> {
+                int deleted = blockedNumbers.delete(normalizedNumber);
+                if (deleted > 0) {
+                    blockedNumbers.bumpVersion();
+                }
+                return deleted;
+            });
+
+            // Log the result of the delete operation
+            if (rowsDeleted > 0) {
+                Log.d("Database", "Removed blocked number: " + phoneNumber);
+                BlocklistSnapshot.onNumbersRemoved(context, Collections.singletonList(normalizedNumber),
+                        blockedNumbers.version());
+                BlocklistChangeFeed.Batch changes = new BlocklistChangeFeed.Batch();
+                changes.removed(normalizedNumber, existing.getPhoneNumber());
+                BlocklistChangeFeed.shared().publish(changes);
+                bumpDataVersion();
+            } else {
+                Log.e("Database", "Failed to remove blocked number: " + phoneNumber);
+            }
+            return null;
+        });
+    }
 
-    // Check if a phone number is blocked
-    public boolean isBlocked(String phoneNumber) {
-        Cursor cursor = null;
-        try {
-            cursor = database.query(TABLE_BLOCKED_NUMBERS,
-                    new String[]{COLUMN_PHONE_NUMBER},
-                    COLUMN_PHONE_NUMBER + " = ? AND (" + COLUMN_UNBLOCK_TIME + " = 0 OR " + COLUMN_UNBLOCK_TIME + " > ?)",
-                    new String[]{phoneNumber, String.valueOf(System.currentTimeMillis())},  // Only return numbers still blocked
-                    null, null, null);
-
-            boolean isBlocked = cursor.getCount() > 0;
-            Log.d("Database", "Phone number " + phoneNumber + " isBlocked: " + isBlocked);
-            return isBlocked;
-        } finally {
-            if (cursor != null) {
-                cursor.close();  // Ensure the cursor is closed after use
+    // Block every message whose body contains the keyword (case-insensitive). The keyword
+    // automaton is rebuilt by the invalidation observer.
+    public boolean addKeywordRule(String keyword) {
+        return write(() -> {
+            long rowId = keywordRules.insert(new KeywordRule(0, keyword.trim()));
+            if (rowId != -1) {
+                Log.d("Database", "Inserted keyword rule: " + keyword);
             }
-        }
+            return rowId != -1;
+        });
     }
 
-    // Get all currently blocked numbers
-// Get all currently blocked numbers (excluding expired ones)
-    public Cursor getBlockedNumbers() {
-        long currentTime = System.currentTimeMillis();
-        database.delete(TABLE_BLOCKED_NUMBERS, COLUMN_UNBLOCK_TIME + " > 0 AND " + COLUMN_UNBLOCK_TIME + " <= ?",
-                new String[]{String.valueOf(currentTime)});  // Delete expired numbers
+    public void removeKeywordRule(String keyword) {
+        write(() -> {
+            if (keywordRules.delete(keyword) > 0) {
+                Log.d("Database", "Removed keyword rule: " + keyword);
+            }
+            return null;
+        });
+    }
 
-        String selection = COLUMN_UNBLOCK_TIME + " = 0 OR " + COLUMN_UNBLOCK_TIME + " > ?";
-        String[] selectionArgs = new String[]{String.valueOf(currentTime)};
+    public List<String> getKeywordRules() {
+        return keywordRules.getKeywords();
+    }
+
+    // Block messages whose sender or body matches the pattern; throws PatternSyntaxException if invalid
+    public boolean addRegexRule(String pattern, String target, int priority) {
+        RegexRuleEngine.validate(pattern);
 
-        return database.query(TABLE_BLOCKED_NUMBERS, null, selection, selectionArgs, null, null, null);
+        return write(() -> {
+            long rowId = regexRules.insert(new RegexRule(0, pattern, target, priority));
+            if (rowId != -1) {
+                Log.d("Database", "Inserted regex rule: " + pattern);
+            }
+            return rowId != -1;
+        });
     }
 
-    // Remove a blocked number (unblock it)
-    public void removeBlockedNumber(String phoneNumber) {
-        int rowsDeleted = database.delete(TABLE_BLOCKED_NUMBERS, COLUMN_PHONE_NUMBER + " = ?", new String[]{phoneNumber});
+    public void removeRegexRule(long ruleId) {
+        write(() -> {
+            if (regexRules.delete(ruleId) > 0) {
+                Log.d("Database", "Removed regex rule: " + ruleId);
+            }
+            return null;
+        });
+    }
 
-        // Log the result of the delete operation
-        if (rowsDeleted > 0) {
-            Log.d("Database", "Removed blocked number: " + phoneNumber);
-        } else {
-            Log.e("Database", "Failed to remove blocked number: " + phoneNumber);
-        }
+    public List<RegexRule> getRegexRules() {
+        return regexRules.getAll();
     }
 
-    // Close the database connection
-    public void close() {
-        if (database != null && database.isOpen()) {
-            database.close();
-            Log.d("Database", "Database connection closed");
-        }
+    // Adds a BlockStats flush to the daily rollups in one transaction, and drops rollups from
+    // before pruneBeforeDay unless it is -1. Statistics never change what is blocked, so unlike
+    // the blocklist writes this leaves the data version alone.
+    void addBlockStats(BlockStats.Rollup rollup, long pruneBeforeDay) {
+        write(() -> {
+            database.runInTransaction(() -> {
+                for (Map.Entry<BlockStats.Key, Long> entry : rollup.senders.entrySet()) {
+                    BlockStats.Key key = entry.getKey();
+                    blockStats.ensureSender(key.day, key.name);
+                    blockStats.addToSender(key.day, key.name, entry.getValue());
+                }
+                for (Map.Entry<BlockStats.Key, Long> entry : rollup.rules.entrySet()) {
+                    BlockStats.Key key = entry.getKey();
+                    blockStats.ensureRule(key.day, key.name);
+                    blockStats.addToRule(key.day, key.name, entry.getValue());
+                }
+                if (pruneBeforeDay != -1) {
+                    blockStats.deleteSendersBefore(pruneBeforeDay);
+                    blockStats.deleteRulesBefore(pruneBeforeDay);
+                }
+            });
+            return null;
+        });
     }
 
+    // The senders blocked most often since fromDay (see BlockStats.dayOf), read from the rollups
+    public List<BlockStatsDao.Total> getTopBlockedSenders(long fromDay, int limit) {
+        return blockStats.getTopSenders(fromDay, limit);
+    }
 
+    // How many messages each rule has blocked since fromDay, most first
+    public List<BlockStatsDao.Total> getRuleHits(long fromDay) {
+        return blockStats.getRuleHits(fromDay);
+    }
 
-    // Database helper class for creating and upgrading the database schema
-    private static class BlockedNumbersSQLiteOpenHelper extends android.database.sqlite.SQLiteOpenHelper {
+    // Blocked messages per day since fromDay, oldest first; days without blocks are absent
+    public List<BlockStatsDao.DayTotal> getDailyBlockCounts(long fromDay) {
+        return blockStats.getDailyTotals(fromDay);
+    }
 
-        public BlockedNumbersSQLiteOpenHelper(Context context) {
-            super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    // normalized number -> unblock time for every timed block, for ExpiryScheduler
+    Map<String, Long> getPendingExpiries() {
+        Map<String, Long> expiries = new HashMap<>();
+        for (BlockedNumber blockedNumber : blockedNumbers.getTimedBlocks()) {
+            expiries.put(blockedNumber.getNormalizedNumber(), blockedNumber.getUnblockTime());
         }
+        return expiries;
+    }
 
-        @Override
-        public void onCreate(SQLiteDatabase db) {
-            // SQL to create the blocked_numbers table
-            String createTableSQL = "CREATE TABLE " + TABLE_BLOCKED_NUMBERS + " (" +
-                    COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                    COLUMN_PHONE_NUMBER + " TEXT NOT NULL, " +
-                    COLUMN_UNBLOCK_TIME + " INTEGER NOT NULL DEFAULT 0);";
-            db.execSQL(createTableSQL);
+    // Deletes the given numbers in one transaction if their unblock time has passed and updates
+    // the snapshot before the next write can commit; returns those removed
+    List<String> deleteExpired(List<String> normalizedNumbers, long now) {
+        return write(() -> {
+            BlocklistChangeFeed.Batch changes = new BlocklistChangeFeed.Batch();
+            List<String> removed = database.runInTransaction(() -> {
+                List<String> deleted = new ArrayList<>();
+                for (String normalizedNumber : normalizedNumbers) {
+                    BlockedNumber existing = blockedNumbers.find(normalizedNumber);
+                    if (existing != null && blockedNumbers.deleteIfExpired(normalizedNumber, now) > 0) {
+                        deleted.add(normalizedNumber);
+                        changes.removed(normalizedNumber, existing.getPhoneNumber());
+                    }
+                }
+                if (!deleted.isEmpty()) {
+                    blockedNumbers.bumpVersion();
+                }
+                return deleted;
+            });
+            if (!removed.isEmpty()) {
+                BlocklistSnapshot.onNumbersRemoved(context, removed, blockedNumbers.version());
+                BlocklistChangeFeed.shared().publish(changes);
+                bumpDataVersion();
+            }
+            return removed;
+        });
+    }
 
-            Log.d("Database", "Table created: " + TABLE_BLOCKED_NUMBERS);
-        }
+    // The persistent blocklist version (see BlocklistVersion); writes only happen on the writer
+    // thread, so read there it is the version of the last committed change
+    long blocklistVersion() {
+        return blockedNumbers.version();
+    }
+
+    static long dataVersion() {
+        return dataVersion.get();
+    }
 
-        @Override
-        public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-            if (oldVersion < 2) {
-                String alterTableSQL = "ALTER TABLE " + TABLE_BLOCKED_NUMBERS + " ADD COLUMN " + COLUMN_UNBLOCK_TIME + " INTEGER NOT NULL DEFAULT 0;";
-                db.execSQL(alterTableSQL);
+    // Call after the in-memory state has been updated, so a decision computed against the old
+    // state can never be stored under the new version. That ordering is why blocklist writes
+    // bump it themselves rather than from an invalidation observer, which runs after the commit
+    // on Room's own executor.
+    static void bumpDataVersion() {
+        dataVersion.incrementAndGet();
+    }
+
+    // Re-read the table and atomically publish a new in-memory snapshot for SmsReceiver. Runs on
+    // the writer thread so no change can commit between reading the version and the rows.
+    void refreshSnapshot() {
+        write(() -> {
+            long version = blockedNumbers.version();
+            try (Cursor cursor = blockedNumbers.getUnblockTimes()) {
+                BlocklistSnapshot.Builder builder = BlocklistSnapshot.newBuilder(context, cursor.getCount(), version);
+                while (cursor.moveToNext()) {
+                    builder.add(cursor.getString(0), cursor.getLong(1));
+                }
+                BlocklistSnapshot.publish(context, builder);
             }
-            if (oldVersion < 3) { // Increment version when adding a new column
-                String alterTableSQL = "ALTER TABLE " + TABLE_BLOCKED_NUMBERS + " ADD COLUMN is_retention_set INTEGER NOT NULL DEFAULT 0;";
-                db.execSQL(alterTableSQL);
+            return null;
+        });
+    }
+
+    // Rebuilds the snapshot in the background if it is behind the table, e.g. because it was
+    // loaded from a file the process died before updating. Queued behind pending writes.
+    void checkSnapshot() {
+        writer.execute(() -> {
+            BlocklistSnapshot snapshot = BlocklistSnapshot.peek();
+            if (snapshot == null || snapshot.version() != blockedNumbers.version()) {
+                refreshSnapshot();
+                bumpDataVersion();
             }
-        }
+        });
+    }
+
+    // The shared connection stays open for the life of the process, so this is a no-op
+    public void close() {
     }
 }
@@ -0,0 +1,153 @@
+package com.example.smsblocker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Every change BlockedNumbersDatabaseHelper commits to the blocklist, in commit order, each with
+// its own version. A consumer remembers the version it last saw and asks for the changes since
+// then (or listens for them) instead of reloading the whole list. Only the most recent changes
+// are kept; a consumer that fell further behind gets null and reloads once. A batch with more
+// changes than are kept (a bulk import) is published as a single RESET, which consumers answer
+// with the same reload, rather than as one Change per number.
+public final class BlocklistChangeFeed {
+
+    static final int HISTORY_SIZE = 512;
+
+    private static final BlocklistChangeFeed shared = new BlocklistChangeFeed(HISTORY_SIZE);
+
+    private final Change[] history;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private long version;  // version of the newest change, 0 before the first one
+
+    public enum Type {
+        ADDED,
+        REMOVED,
+        EXPIRY_CHANGED,
+        // Too many changes at once to list them; the number fields are null
+        RESET
+    }
+
+    public static final class Change {
+        public final long version;
+        public final Type type;
+        public final String normalizedNumber;
+        public final String phoneNumber;  // as stored (and shown), null if it is not known
+        public final long unblockTime;    // 0 means blocked permanently
+
+        Change(long version, Type type, String normalizedNumber, String phoneNumber, long unblockTime) {
+            this.version = version;
+            this.type = type;
+            this.normalizedNumber = normalizedNumber;
+            this.phoneNumber = phoneNumber;
+            this.unblockTime = unblockTime;
+        }
+    }
+
+    // Changes from one transaction, published together. Holds at most HISTORY_SIZE of them;
+    // past that it only remembers that it overflowed.
+    public static final class Batch {
+        private final List<Change> changes = new ArrayList<>();
+        private boolean overflowed;
+
+        void added(String normalizedNumber, String phoneNumber, long unblockTime) {
+            add(new Change(0, Type.ADDED, normalizedNumber, phoneNumber, unblockTime));
+        }
+
+        void removed(String normalizedNumber, String phoneNumber) {
+            add(new Change(0, Type.REMOVED, normalizedNumber, phoneNumber, 0));
+        }
+
+        void expiryChanged(String normalizedNumber, String phoneNumber, long unblockTime) {
+            add(new Change(0, Type.EXPIRY_CHANGED, normalizedNumber, phoneNumber, unblockTime));
+        }
+
+        boolean isEmpty() {
+            return !overflowed && changes.isEmpty();
+        }
+
+        private void add(Change change) {
+            if (overflowed) {
+                return;
+            }
+            if (changes.size() == HISTORY_SIZE) {
+                changes.clear();
+                overflowed = true;
+                return;
+            }
+            changes.add(change);
+        }
+    }
+
+    public interface Listener {
+        // Called on the thread that committed the changes, in version order
+        void onBlocklistChanged(List<Change> changes);
+    }
+
+    BlocklistChangeFeed(int historySize) {
+        history = new Change[historySize];
+    }
+
+    public static BlocklistChangeFeed shared() {
+        return shared;
+    }
+
+    public synchronized long version() {
+        return version;
+    }
+
+    // Returns the changes after the given version, oldest first, or null if some of them are no
+    // longer kept (or a RESET is among them) and the caller has to reload everything
+    public synchronized List<Change> changesSince(long sinceVersion) {
+        if (sinceVersion >= version) {
+            return Collections.emptyList();
+        }
+        long missed = version - sinceVersion;
+        if (sinceVersion < 0 || missed > history.length) {
+            return null;
+        }
+        List<Change> changes = new ArrayList<>((int) missed);
+        for (long v = sinceVersion + 1; v <= version; v++) {
+            Change change = history[(int) (v % history.length)];
+            if (change.type == Type.RESET) {
+                return null;
+            }
+            changes.add(change);
+        }
+        return changes;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    // Assigns the next versions to the batch and hands it to the listeners; only the writer
+    // thread publishes, so listeners see batches in version order
+    void publish(Batch batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        // A batch the history cannot hold would push out everything else anyway
+        List<Change> changes = batch.overflowed || batch.changes.size() > history.length
+                ? Collections.singletonList(new Change(0, Type.RESET, null, null, 0))
+                : batch.changes;
+        List<Change> published = new ArrayList<>(changes.size());
+        synchronized (this) {
+            for (Change change : changes) {
+                Change versioned = new Change(++version, change.type, change.normalizedNumber,
+                        change.phoneNumber, change.unblockTime);
+                history[(int) (versioned.version % history.length)] = versioned;
+                published.add(versioned);
+            }
+        }
+        published = Collections.unmodifiableList(published);
+        for (Listener listener : listeners) {
+            listener.onBlocklistChanged(published);
+        }
+    }
+}
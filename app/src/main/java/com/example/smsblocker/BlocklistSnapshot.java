@@ -0,0 +1,579 @@
+package com.example.smsblocker;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Immutable, process-wide copy of the blocked_numbers table used by SmsReceiver.
+// A new snapshot is published every time the table changes, so the receiver never has to open
+// SQLite just to answer "is this sender blocked?". Each snapshot carries the blocklist version
+// (see BlocklistVersion) it reflects. The file copy for cold starts is rewritten in batches, and
+// a copy that fell behind the table is rebuilt once the database is open.
+//
+// Every exact number goes through a Bloom filter first. Small lists also keep the exact
+// numbers in memory: permanent blocks in a NumberSet, which packs numeric keys into a long
+// table, and the usually few timed blocks with their unblock times in a map. Large imported
+// lists keep only the filter in memory; a possible hit is looked up in the memory-mapped
+// BinaryBlocklist index of the permanent numbers, written whenever such a snapshot is rebuilt,
+// and falls through to the indexed SQLite table when the index cannot answer for it: numbers
+// added since, and the removed or timed ones the snapshot lists as overrides. Their heap cost
+// is about a byte per number.
+public final class BlocklistSnapshot {
+
+    private static final String TAG = "BlocklistSnapshot";
+    private static final String SNAPSHOT_FILE = "blocklist.snapshot";
+    static final String PREFS_NAME = "blocklist_snapshot";
+    private static final String KEY_FALSE_POSITIVE_RATE = "false_positive_rate";
+    private static final int FILE_MAGIC = 0x534D4236;  // "SMB6"
+    // Changes arriving within this window share one file write
+    private static final long WRITE_DELAY_MS = 1_000;
+
+    // Above this many numbers the exact entries are no longer held in memory
+    static final int IN_MEMORY_LIMIT = 10_000;
+    // The filter is sized for this many times the current list so additions fit in place
+    private static final int FILTER_HEADROOM = 2;
+    private static final int MIN_FILTER_CAPACITY = 1_024;
+    private static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+
+    private static final AtomicReference<BlocklistSnapshot> current = new AtomicReference<>();
+    private static final Object loadLock = new Object();
+    // 0 until read from the preferences
+    private static volatile double falsePositiveRate;
+    private static volatile Context appContext;
+    private static final ScheduledExecutorService fileWriter = Executors.newSingleThreadScheduledExecutor();
+    private static final AtomicBoolean writePending = new AtomicBoolean();
+
+    // numbers blocked permanently; null for large lists
+    private final NumberSet permanentNumbers;
+    // normalized phone number -> unblock time of a timed block; null for large lists
+    private final Map<String, Long> timedNumbers;
+    // prefix rules ("+1800*") from the same table, always kept in memory
+    private final Map<String, Long> prefixUnblockTimes;
+    private final PrefixTrie prefixRules;
+    private final BloomFilter filter;
+    private final int size;
+    // removed numbers whose bits are still set in the filter
+    private final int staleEntries;
+    // blocklist version of the last change this snapshot includes
+    private final long version;
+    // Large lists: numbers removed or given an unblock time since the index was built, which the
+    // index must not answer for; null for small lists
+    private final NumberSet overrides;
+    // Large lists: blocklist version of the BinaryBlocklist index the overrides apply to
+    private final long indexVersion;
+
+    private BlocklistSnapshot(NumberSet permanentNumbers, Map<String, Long> timedNumbers,
+                              Map<String, Long> prefixUnblockTimes, BloomFilter filter, int size, int staleEntries,
+                              long version, NumberSet overrides, long indexVersion) {
+        this.permanentNumbers = permanentNumbers;
+        this.timedNumbers = timedNumbers != null ? Collections.unmodifiableMap(timedNumbers) : null;
+        this.prefixUnblockTimes = Collections.unmodifiableMap(prefixUnblockTimes);
+        this.prefixRules = buildPrefixRules(prefixUnblockTimes);
+        this.filter = filter;
+        this.size = size;
+        this.staleEntries = staleEntries;
+        this.version = version;
+        this.overrides = overrides;
+        this.indexVersion = indexVersion;
+    }
+
+    private static PrefixTrie buildPrefixRules(Map<String, Long> prefixUnblockTimes) {
+        String[] prefixes = new String[prefixUnblockTimes.size()];
+        long[] times = new long[prefixes.length];
+        int i = 0;
+        for (Map.Entry<String, Long> entry : prefixUnblockTimes.entrySet()) {
+            String rule = entry.getKey();
+            prefixes[i] = rule.substring(0, rule.length() - 1);
+            times[i] = entry.getValue();
+            i++;
+        }
+        return PrefixTrie.build(prefixes, times);
+    }
+
+    // Returns the current snapshot, loading it from disk (or SQLite as a last resort) on a cold start
+    public static BlocklistSnapshot get(Context context) {
+        if (appContext == null) {
+            appContext = context.getApplicationContext();
+            ExpiryScheduler.start(appContext);
+        }
+
+        BlocklistSnapshot snapshot = current.get();
+        if (snapshot != null) {
+            return snapshot;
+        }
+
+        synchronized (loadLock) {
+            snapshot = current.get();
+            if (snapshot != null) {
+                return snapshot;
+            }
+
+            snapshot = readFromFile(context);
+            if (snapshot != null) {
+                current.compareAndSet(null, snapshot);
+            }
+        }
+        if (snapshot != null) {
+            // Answer from the file now; the version check opens the database in the background
+            final Context appContext = context.getApplicationContext();
+            fileWriter.execute(() -> BlockedNumbersDatabaseHelper.getInstance(appContext).checkSnapshot());
+            return current.get();
+        }
+
+        // No persisted copy yet: rebuild it from the table
+        rebuild(context);
+        return current.get();
+    }
+
+    // Changes the Bloom filter's target false-positive rate and rebuilds it. The rate is kept
+    // in the preferences, so the next cold start can still use a file written with it.
+    public static void setFalsePositiveRate(Context context, double rate) {
+        if (rate <= 0 || rate >= 1) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1: " + rate);
+        }
+        preferences(context).edit().putLong(KEY_FALSE_POSITIVE_RATE, Double.doubleToLongBits(rate)).apply();
+        falsePositiveRate = rate;
+        rebuild(context);
+    }
+
+    static double falsePositiveRate(Context context) {
+        double rate = falsePositiveRate;
+        if (rate == 0) {
+            rate = Double.longBitsToDouble(preferences(context).getLong(KEY_FALSE_POSITIVE_RATE,
+                    Double.doubleToLongBits(DEFAULT_FALSE_POSITIVE_RATE)));
+            falsePositiveRate = rate;
+        }
+        return rate;
+    }
+
+    private static SharedPreferences preferences(Context context) {
+        return context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    static Builder newBuilder(Context context, int expectedSize, long version) {
+        return new Builder(expectedSize, falsePositiveRate(context), version);
+    }
+
+    // Atomically replaces the process-wide snapshot and persists it for the next cold start. A
+    // large list's index is rewritten in the background; lookups use the table until it is.
+    static void publish(Context context, Builder builder) {
+        boolean large = builder.permanentNumbers == null;
+        BlocklistSnapshot snapshot = new BlocklistSnapshot(builder.permanentNumbers, builder.timedNumbers,
+                builder.prefixUnblockTimes, builder.filter, builder.size(), 0, builder.version,
+                large ? new NumberSet() : null, large ? builder.version : -1);
+        install(context, snapshot);
+        if (large) {
+            final Context appContext = context.getApplicationContext();
+            final long[] keys = builder.indexKeys;
+            final int keyCount = builder.indexKeyCount;
+            final long version = builder.version;
+            fileWriter.execute(() -> BinaryBlocklist.rebuild(appContext, keys, keyCount, version));
+        }
+    }
+
+    // Applies newly blocked numbers (inserted) and changed unblock times of numbers that were
+    // already blocked (updated) without re-reading the table. Only inserted numbers grow the
+    // list. version is the blocklist version of the change; called on the database writer thread.
+    static void onNumbersAdded(Context context, Map<String, Long> inserted, Map<String, Long> updated,
+                               long version) {
+        synchronized (loadLock) {
+            BlocklistSnapshot snapshot = get(context);
+            if (!canApply(context, snapshot, version)) {
+                return;
+            }
+
+            Map<String, Long> prefixes = new HashMap<>(snapshot.prefixUnblockTimes);
+            Map<String, Long> numbers = new HashMap<>();
+            int insertedNumbers = splitPrefixes(inserted, prefixes, numbers);
+            splitPrefixes(updated, prefixes, numbers);
+
+            int newSize = snapshot.size + insertedNumbers;
+            if (newSize + snapshot.staleEntries > snapshot.filter.expectedInsertions()
+                    || snapshot.permanentNumbers != null && newSize > IN_MEMORY_LIMIT) {
+                // Out of headroom, or the list just became too large to keep in memory
+                rebuild(context);
+                return;
+            }
+
+            NumberSet permanentNumbers = null;
+            Map<String, Long> timedNumbers = null;
+            if (snapshot.permanentNumbers != null) {
+                permanentNumbers = snapshot.permanentNumbers.copy();
+                timedNumbers = new HashMap<>(snapshot.timedNumbers);
+                for (Map.Entry<String, Long> entry : numbers.entrySet()) {
+                    // The table row is authoritative, so a change replaces whatever was there
+                    if (entry.getValue() == 0) {
+                        permanentNumbers.add(entry.getKey());
+                        timedNumbers.remove(entry.getKey());
+                    } else {
+                        permanentNumbers.remove(entry.getKey());
+                        timedNumbers.put(entry.getKey(), entry.getValue());
+                    }
+                }
+                newSize = permanentNumbers.size() + timedNumbers.size();
+            }
+            NumberSet overrides = snapshot.overrides;
+            if (overrides != null) {
+                for (Map.Entry<String, Long> entry : updated.entrySet()) {
+                    // The index only knows the number as blocked for good
+                    if (entry.getValue() != 0 && !PhoneNumberNormalizer.isPrefixRule(entry.getKey())) {
+                        if (overrides == snapshot.overrides) {
+                            overrides = overrides.copy();
+                        }
+                        overrides.add(entry.getKey());
+                    }
+                }
+                if (overrides.size() > Math.max(newSize, MIN_FILTER_CAPACITY) / 4) {
+                    rebuild(context);
+                    return;
+                }
+            }
+            // Setting bits in place is safe: older snapshots only see extra (harmless) false positives
+            for (String number : numbers.keySet()) {
+                snapshot.filter.put(number);
+            }
+            install(context, new BlocklistSnapshot(permanentNumbers, timedNumbers, prefixes, snapshot.filter,
+                    newSize, snapshot.staleEntries, version, overrides, snapshot.indexVersion));
+        }
+    }
+
+    // Moves prefix rules into prefixes and numbers into numbers; returns how many were numbers
+    private static int splitPrefixes(Map<String, Long> entries, Map<String, Long> prefixes, Map<String, Long> numbers) {
+        int count = 0;
+        for (Map.Entry<String, Long> entry : entries.entrySet()) {
+            if (PhoneNumberNormalizer.isPrefixRule(entry.getKey())) {
+                prefixes.put(entry.getKey(), entry.getValue());
+            } else if (entry.getKey() != null) {
+                numbers.put(entry.getKey(), entry.getValue());
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // Applies unblocked numbers; their filter bits stay set until too many removals pile up
+    static void onNumbersRemoved(Context context, Collection<String> removed, long version) {
+        synchronized (loadLock) {
+            BlocklistSnapshot snapshot = get(context);
+            if (!canApply(context, snapshot, version)) {
+                return;
+            }
+
+            Map<String, Long> prefixes = new HashMap<>(snapshot.prefixUnblockTimes);
+            NumberSet permanentNumbers = snapshot.permanentNumbers != null ? snapshot.permanentNumbers.copy() : null;
+            Map<String, Long> timedNumbers = snapshot.timedNumbers != null ? new HashMap<>(snapshot.timedNumbers) : null;
+            NumberSet overrides = snapshot.overrides != null ? snapshot.overrides.copy() : null;
+            int removedNumbers = 0;
+            for (String key : removed) {
+                if (PhoneNumberNormalizer.isPrefixRule(key)) {
+                    prefixes.remove(key);
+                } else if (overrides != null) {
+                    overrides.add(key);
+                    removedNumbers++;
+                } else if (permanentNumbers.remove(key) || timedNumbers.remove(key) != null) {
+                    removedNumbers++;
+                }
+            }
+
+            int newSize = Math.max(0, snapshot.size - removedNumbers);
+            int staleEntries = snapshot.staleEntries + removedNumbers;
+            // Removals also grow the overrides, so this bounds them as well
+            if (staleEntries > Math.max(newSize, MIN_FILTER_CAPACITY) / 4) {
+                rebuild(context);
+                return;
+            }
+            install(context, new BlocklistSnapshot(permanentNumbers, timedNumbers, prefixes, snapshot.filter, newSize,
+                    staleEntries, version, overrides, snapshot.indexVersion));
+        }
+    }
+
+    // Every change bumps the version by one, so a change applies on top of the snapshot only if
+    // the snapshot holds the one before it. A snapshot that already includes the change (it was
+    // just rebuilt from the table) is left alone; one that missed a change is rebuilt.
+    private static boolean canApply(Context context, BlocklistSnapshot snapshot, long version) {
+        if (snapshot.version >= version) {
+            return false;
+        }
+        if (snapshot.version != version - 1) {
+            Log.w(TAG, "Snapshot at version " + snapshot.version + " missed changes before " + version);
+            rebuild(context);
+            return false;
+        }
+        return true;
+    }
+
+    private static void rebuild(Context context) {
+        BlockedNumbersDatabaseHelper dbHelper = BlockedNumbersDatabaseHelper.getInstance(context);
+        dbHelper.refreshSnapshot();
+    }
+
+    private static void install(Context context, BlocklistSnapshot snapshot) {
+        current.set(snapshot);
+        scheduleWrite(context.getApplicationContext());
+    }
+
+    // The file only has to be current for the next cold start, and a stale one is caught by its
+    // version, so a burst of changes costs one write of the latest snapshot
+    private static void scheduleWrite(final Context context) {
+        if (!writePending.compareAndSet(false, true)) {
+            return;
+        }
+        fileWriter.schedule(() -> {
+            writePending.set(false);
+            writeToFile(context, current.get());
+        }, WRITE_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // Returns the loaded snapshot without touching disk or SQLite, or null before the first load
+    static BlocklistSnapshot peek() {
+        return current.get();
+    }
+
+    long version() {
+        return version;
+    }
+
+    // Expects a key produced by PhoneNumberNormalizer
+    public boolean isBlocked(String normalizedNumber, long now) {
+        return blockedUntil(normalizedNumber, now, true) != PrefixTrie.NOT_BLOCKED;
+    }
+
+    // Answers from memory only: a large list's possible hits count as not blocked
+    boolean isBlockedInMemory(String normalizedNumber, long now) {
+        return blockedUntil(normalizedNumber, now, false) != PrefixTrie.NOT_BLOCKED;
+    }
+
+    // When the block on the number ends: 0 if it is blocked for good, PrefixTrie.NOT_BLOCKED if
+    // it is not blocked at all. Lets a cached decision expire with the block it was based on.
+    long blockedUntil(String normalizedNumber, long now) {
+        return blockedUntil(normalizedNumber, now, true);
+    }
+
+    private long blockedUntil(String normalizedNumber, long now, boolean allowDatabase) {
+        if (normalizedNumber == null) {
+            return PrefixTrie.NOT_BLOCKED;
+        }
+        // Cost proportional to the length of the number, not the number of prefix rules
+        long prefixBlockedUntil = prefixRules.blockedUntil(normalizedNumber, now);
+        if (prefixBlockedUntil == 0) {
+            return 0;
+        }
+        return laterOf(prefixBlockedUntil, numberBlockedUntil(normalizedNumber, now, allowDatabase));
+    }
+
+    private long numberBlockedUntil(String normalizedNumber, long now, boolean allowDatabase) {
+        if (!filter.mightContain(normalizedNumber)) {
+            return PrefixTrie.NOT_BLOCKED;
+        }
+
+        if (permanentNumbers != null) {
+            if (permanentNumbers.contains(normalizedNumber)) {
+                return 0;
+            }
+            Long unblockTime = timedNumbers.get(normalizedNumber);
+            // ExpiryScheduler drops expired entries, but its alarm can run late while the device dozes
+            return unblockTime != null && unblockTime > now ? unblockTime : PrefixTrie.NOT_BLOCKED;
+        }
+        // Large list: a possible hit is searched in place in the memory-mapped index
+        if (appContext != null && !overrides.contains(normalizedNumber)) {
+            BinaryBlocklist index = BinaryBlocklist.get(appContext);
+            if (index.version() == indexVersion && index.contains(normalizedNumber)) {
+                return 0;
+            }
+        }
+        if (!allowDatabase) {
+            return PrefixTrie.NOT_BLOCKED;
+        }
+        // Added since the index was built, overridden, or a false positive: ask the table
+        BlockedNumbersDatabaseHelper dbHelper = BlockedNumbersDatabaseHelper.getInstance(appContext);
+        return dbHelper.blockedUntil(normalizedNumber, now);
+    }
+
+    private static long laterOf(long a, long b) {
+        if (a == PrefixTrie.NOT_BLOCKED) {
+            return b;
+        }
+        if (b == PrefixTrie.NOT_BLOCKED) {
+            return a;
+        }
+        return a == 0 || b == 0 ? 0 : Math.max(a, b);
+    }
+
+    public int size() {
+        return size + prefixUnblockTimes.size();
+    }
+
+    private static AtomicFile snapshotFile(Context context) {
+        return new AtomicFile(new File(context.getFilesDir(), SNAPSHOT_FILE));
+    }
+
+    private static BlocklistSnapshot readFromFile(Context context) {
+        AtomicFile file = snapshotFile(context);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(file.openRead()))) {
+            if (in.readInt() != FILE_MAGIC) {
+                Log.w(TAG, "Ignoring snapshot file with unknown format");
+                return null;
+            }
+
+            long version = in.readLong();
+            long indexVersion = in.readLong();
+            int size = in.readInt();
+            int staleEntries = in.readInt();
+            Map<String, Long> prefixUnblockTimes = readEntries(in);
+            NumberSet permanentNumbers = null;
+            Map<String, Long> timedNumbers = null;
+            NumberSet overrides = null;
+            if (in.readBoolean()) {
+                permanentNumbers = NumberSet.readFrom(in);
+                timedNumbers = readEntries(in);
+            } else {
+                overrides = NumberSet.readFrom(in);
+            }
+            BloomFilter filter = BloomFilter.readFrom(in);
+            if (filter.falsePositiveRate() != falsePositiveRate(context)) {
+                Log.d(TAG, "Rebuilding snapshot for a new false positive rate");
+                return null;
+            }
+
+            Log.d(TAG, "Loaded " + size + " blocked numbers at version " + version + " from " + SNAPSHOT_FILE);
+            return new BlocklistSnapshot(permanentNumbers, timedNumbers, prefixUnblockTimes, filter, size, staleEntries,
+                    version, overrides, indexVersion);
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to read snapshot: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static Map<String, Long> readEntries(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        Map<String, Long> entries = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            String phoneNumber = in.readUTF();
+            entries.put(phoneNumber, in.readLong());
+        }
+        return entries;
+    }
+
+    private static void writeEntries(DataOutputStream out, Map<String, Long> entries) throws IOException {
+        out.writeInt(entries.size());
+        for (Map.Entry<String, Long> entry : entries.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeLong(entry.getValue());
+        }
+    }
+
+    private static void writeToFile(Context context, BlocklistSnapshot snapshot) {
+        AtomicFile file = snapshotFile(context);
+        FileOutputStream stream = null;
+        try {
+            stream = file.startWrite();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+            out.writeInt(FILE_MAGIC);
+            out.writeLong(snapshot.version);
+            out.writeLong(snapshot.indexVersion);
+            out.writeInt(snapshot.size);
+            out.writeInt(snapshot.staleEntries);
+            writeEntries(out, snapshot.prefixUnblockTimes);
+            out.writeBoolean(snapshot.permanentNumbers != null);
+            if (snapshot.permanentNumbers != null) {
+                snapshot.permanentNumbers.writeTo(out);
+                writeEntries(out, snapshot.timedNumbers);
+            } else {
+                snapshot.overrides.writeTo(out);
+            }
+            snapshot.filter.writeTo(out);
+            out.flush();
+            file.finishWrite(stream);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to write snapshot: " + e.getMessage());
+            if (stream != null) {
+                file.failWrite(stream);
+            }
+        }
+    }
+
+    // Collects the rows of a full table scan into a new snapshot
+    static final class Builder {
+        private final NumberSet permanentNumbers;
+        private final Map<String, Long> timedNumbers;
+        private final Map<String, Long> prefixUnblockTimes = new HashMap<>();
+        private final BloomFilter filter;
+        private final long version;
+        // numbers seen, for large lists that do not keep them
+        private int count;
+        // Large lists: the permanent numeric numbers, for the BinaryBlocklist index
+        private long[] indexKeys;
+        private int indexKeyCount;
+
+        private Builder(int expectedSize, double falsePositiveRate, long version) {
+            this.version = version;
+            boolean inMemory = expectedSize <= IN_MEMORY_LIMIT;
+            permanentNumbers = inMemory ? new NumberSet(expectedSize) : null;
+            timedNumbers = inMemory ? new HashMap<String, Long>() : null;
+            indexKeys = inMemory ? null : new long[expectedSize];
+            filter = new BloomFilter(Math.max(MIN_FILTER_CAPACITY, expectedSize * FILTER_HEADROOM), falsePositiveRate);
+        }
+
+        void add(String normalizedNumber, long unblockTime) {
+            if (normalizedNumber == null) {
+                return;
+            }
+            if (PhoneNumberNormalizer.isPrefixRule(normalizedNumber)) {
+                keepLatest(prefixUnblockTimes, normalizedNumber, unblockTime);
+                return;
+            }
+
+            filter.put(normalizedNumber);
+            if (permanentNumbers == null) {
+                count++;
+                long key = NumberSet.encode(normalizedNumber);
+                // Timed blocks and sender IDs are left to the table
+                if (unblockTime == 0 && key != 0) {
+                    if (indexKeyCount == indexKeys.length) {
+                        indexKeys = Arrays.copyOf(indexKeys, Math.max(16, indexKeyCount * 2));
+                    }
+                    indexKeys[indexKeyCount++] = key;
+                }
+            } else if (unblockTime == 0) {
+                permanentNumbers.add(normalizedNumber);
+                timedNumbers.remove(normalizedNumber);
+            } else if (!permanentNumbers.contains(normalizedNumber)) {
+                keepLatest(timedNumbers, normalizedNumber, unblockTime);
+            }
+        }
+
+        int size() {
+            return permanentNumbers != null ? permanentNumbers.size() + timedNumbers.size() : count;
+        }
+
+        // Keep the latest expiry if the same number was blocked more than once
+        private static void keepLatest(Map<String, Long> entries, String key, long unblockTime) {
+            Long existing = entries.get(key);
+            if (existing == null || existing != 0 && (unblockTime == 0 || unblockTime > existing)) {
+                entries.put(key, unblockTime);
+            }
+        }
+    }
+}
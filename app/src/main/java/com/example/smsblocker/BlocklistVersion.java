@@ -0,0 +1,34 @@
+package com.example.smsblocker;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+// Single row holding the blocklist's version. BlockedNumbersDatabaseHelper bumps it in the same
+// transaction as every change to blocked_numbers, so a copy of the list kept elsewhere (the
+// BlocklistSnapshot file) can tell whether it missed a change.
+@Entity(tableName = BlocklistVersion.TABLE)
+public class BlocklistVersion {
+
+    public static final String TABLE = "blocklist_version";
+
+    @PrimaryKey
+    @ColumnInfo(name = "id")
+    private final int id;
+
+    @ColumnInfo(name = "version", defaultValue = "0")
+    private final long version;
+
+    public BlocklistVersion(int id, long version) {
+        this.id = id;
+        this.version = version;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+}
@@ -6,9 +6,7 @@ import android.content.ContentResolver;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.database.Cursor;
-import android.net.Uri;
 import android.os.Bundle;
-import android.provider.ContactsContract;
 import android.provider.Telephony;
 import android.telephony.SmsManager;
 import android.text.format.DateFormat;
@@ -68,7 +66,7 @@ public class ChatActivity extends AppCompatActivity {
 
         // **Fetch name from contacts if not provided**
         if (senderName == null || senderName.isEmpty()) {
-            senderName = getContactName(phoneNumber);
+            senderName = ContactNameCache.get(this).nameFor(phoneNumber);
         }
 
         // **Set sender name or phone number in UI**
@@ -106,23 +104,6 @@ public class ChatActivity extends AppCompatActivity {
     }
 
     // **Fetch the contact name from contacts**
-    private String getContactName(String phoneNumber) {
-        ContentResolver resolver = getContentResolver();
-        Uri uri = ContactsContract.CommonDataKinds.Phone.CONTENT_URI;
-        String[] projection = {ContactsContract.CommonDataKinds.Phone.DISPLAY_NAME};
-
-        Cursor cursor = resolver.query(uri, projection,
-                ContactsContract.CommonDataKinds.Phone.NUMBER + " = ?",
-                new String[]{phoneNumber}, null);
-
-        if (cursor != null && cursor.moveToFirst()) {
-            String contactName = cursor.getString(0);
-            cursor.close();
-            return contactName;
-        }
-        return null; // Return null if no name found
-    }
-
     // Load chat messages from the SMS content provider
     private void loadChatMessages() {
         if (phoneNumber == null || phoneNumber.isEmpty()) {
@@ -133,11 +114,16 @@ public class ChatActivity extends AppCompatActivity {
         List<Message> messages = new ArrayList<>();
         ContentResolver contentResolver = getContentResolver();
 
+        // Query by thread id so every format of the number matches without a LIKE scan
+        long threadId = SmsThreads.threadIdFor(this, phoneNumber);
+        String selection = threadId != -1 ? Telephony.Sms.THREAD_ID + " = ?" : Telephony.Sms.ADDRESS + " = ?";
+        String selectionArg = threadId != -1 ? String.valueOf(threadId) : phoneNumber;
+
         Cursor cursor = contentResolver.query(
                 Telephony.Sms.CONTENT_URI,
-                null,
-                Telephony.Sms.ADDRESS + " LIKE ?",
-                new String[]{"%" + phoneNumber + "%"},
+                new String[]{Telephony.Sms.BODY, Telephony.Sms.DATE, Telephony.Sms.TYPE},
+                selection,
+                new String[]{selectionArg},
                 Telephony.Sms.DATE + " ASC" // Sort messages from oldest to newest
         );
 
@@ -0,0 +1,168 @@
+package com.example.smsblocker;
+
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.provider.ContactsContract;
+import android.util.Log;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Display names for phone numbers, shared by the inbox, the blocked list and the chat screen.
+// Every phone number in the address book is read with one bulk query into a map keyed by the
+// normalized number, so lists resolve names from memory instead of querying the contacts
+// provider per row. A ContentObserver on the contacts reloads the map (debounced, since a sync
+// sends a burst of notifications) and swaps it in whole.
+public final class ContactNameCache {
+
+    private static final String TAG = "ContactNameCache";
+
+    // Wait this long after a contacts change for the burst to settle before reloading
+    private static final long RELOAD_DELAY_MILLIS = 2_000;
+
+    private static final String[] PROJECTION = {
+            ContactsContract.CommonDataKinds.Phone.NUMBER,
+            ContactsContract.CommonDataKinds.Phone.DISPLAY_NAME
+    };
+
+    private static final Object instanceLock = new Object();
+    private static volatile ContactNameCache instance;
+    private static final ScheduledExecutorService loader = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "contacts-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Context context;
+    private final PhoneNumberNormalizer normalizer;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean reloadScheduled = new AtomicBoolean();
+    // null until the first load; replaced whole, never modified
+    private volatile Map<String, String> names;
+
+    public interface Listener {
+        // Called on the loader thread after the names were reloaded
+        void onContactNamesChanged();
+    }
+
+    private ContactNameCache(Context context) {
+        this.context = context;
+        this.normalizer = PhoneNumberNormalizer.forContext(context);
+        context.getContentResolver().registerContentObserver(ContactsContract.Contacts.CONTENT_URI, true,
+                new ContentObserver(null) {
+                    @Override
+                    public void onChange(boolean selfChange) {
+                        scheduleReload(RELOAD_DELAY_MILLIS);
+                    }
+                });
+    }
+
+    public static ContactNameCache get(Context context) {
+        ContactNameCache cache = instance;
+        if (cache == null) {
+            synchronized (instanceLock) {
+                if (instance == null) {
+                    instance = new ContactNameCache(context.getApplicationContext());
+                }
+                cache = instance;
+            }
+        }
+        return cache;
+    }
+
+    // Loads the names in the background so the first list to bind finds them ready
+    public void preload() {
+        if (names == null) {
+            scheduleReload(0);
+        }
+    }
+
+    // Reads the names again, e.g. once READ_CONTACTS has been granted
+    public void refresh() {
+        scheduleReload(0);
+    }
+
+    // The contact's display name for the number, or null if it is not in the address book.
+    // Never queries on the calling thread: before the first load it returns null and starts
+    // one, and listeners hear when the names are ready.
+    public String nameFor(String phoneNumber) {
+        Map<String, String> current = names;
+        if (current == null) {
+            preload();
+            return null;
+        }
+        return lookUp(current, phoneNumber);
+    }
+
+    // Like nameFor, but loads the names on the calling thread if nothing has loaded them yet.
+    // Only for callers already off the main thread, such as a background page load.
+    public String loadNameFor(String phoneNumber) {
+        Map<String, String> current = names;
+        return lookUp(current != null ? current : loadIfNeeded(), phoneNumber);
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private void scheduleReload(long delayMillis) {
+        if (!reloadScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        loader.schedule(() -> {
+            reloadScheduled.set(false);
+            load();
+            for (Listener listener : listeners) {
+                listener.onContactNamesChanged();
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private String lookUp(Map<String, String> current, String phoneNumber) {
+        if (phoneNumber == null) {
+            return null;
+        }
+        String normalizedNumber = normalizer.normalize(phoneNumber);
+        return normalizedNumber != null ? current.get(normalizedNumber) : null;
+    }
+
+    private synchronized Map<String, String> loadIfNeeded() {
+        return names != null ? names : load();
+    }
+
+    // One query for every phone number in the address book
+    private synchronized Map<String, String> load() {
+        Map<String, String> loaded = new HashMap<>();
+        try (Cursor cursor = context.getContentResolver().query(
+                ContactsContract.CommonDataKinds.Phone.CONTENT_URI, PROJECTION, null, null, null)) {
+            if (cursor != null) {
+                while (cursor.moveToNext()) {
+                    String normalizedNumber = normalizer.normalize(cursor.getString(0));
+                    String name = cursor.getString(1);
+                    // The first contact listed for a shared number keeps it
+                    if (normalizedNumber != null && name != null && !loaded.containsKey(normalizedNumber)) {
+                        loaded.put(normalizedNumber, name);
+                    }
+                }
+            }
+        } catch (SecurityException e) {
+            // Without READ_CONTACTS every number shows as itself until refresh() after the grant
+            Log.w(TAG, "Cannot read contacts: " + e.getMessage());
+        }
+        names = Collections.unmodifiableMap(loaded);
+        Log.d(TAG, "Loaded " + loaded.size() + " contact numbers");
+        return names;
+    }
+}
@@ -0,0 +1,280 @@
+package com.example.smsblocker;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.provider.Telephony;
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+// Reads the inbox one row per conversation from the provider's threads table, which already
+// keeps each thread's latest snippet and date, instead of walking every message ever received.
+// Blocked senders are resolved to their canonical address ids once and skipped while reading,
+// so the cost follows the number of conversations, not messages.
+//
+// Conversations are read a page at a time with keyset pagination on (date, _id): each page
+// continues strictly after the last row of the previous one, so rows inserted meanwhile never
+// shift a page boundary. A "simple" threads query ignores the sort order, and with it any
+// LIMIT, so each page reads the threads past its key and keeps the nearest ones itself.
+public final class Conversations {
+
+    private static final String[] THREAD_PROJECTION = {
+            Telephony.Threads._ID,
+            Telephony.Threads.DATE,
+            Telephony.Threads.RECIPIENT_IDS,
+            Telephony.Threads.SNIPPET
+    };
+
+    private static final String OLDER_THAN = "(" + Telephony.Threads.DATE + " < ? OR (" +
+            Telephony.Threads.DATE + " = ? AND " + Telephony.Threads._ID + " < ?))";
+    private static final String NEWER_THAN = "(" + Telephony.Threads.DATE + " > ? OR (" +
+            Telephony.Threads.DATE + " = ? AND " + Telephony.Threads._ID + " > ?))";
+    private static final Comparator<Conversation> LATEST_FIRST = new Comparator<Conversation>() {
+        @Override
+        public int compare(Conversation a, Conversation b) {
+            int byDate = Long.compare(b.date, a.date);
+            return byDate != 0 ? byDate : Long.compare(b.threadId, a.threadId);
+        }
+    };
+    private static final Comparator<Conversation> OLDEST_FIRST = Collections.reverseOrder(LATEST_FIRST);
+
+    public static final class Conversation {
+        public final long threadId;
+        public final String address;  // the first recipient for group threads
+        public final String snippet;
+        public final long date;
+        public final int unreadCount;
+
+        Conversation(long threadId, String address, String snippet, long date, int unreadCount) {
+            this.threadId = threadId;
+            this.address = address;
+            this.snippet = snippet;
+            this.date = date;
+            this.unreadCount = unreadCount;
+        }
+    }
+
+    // A message stored after the inbox was loaded, see messagesAfter
+    public static final class NewMessage {
+        public final long id;
+        public final long threadId;
+        public final String address;
+        public final String body;
+        public final long date;
+        public final boolean unread;
+
+        NewMessage(long id, long threadId, String address, String body, long date, boolean unread) {
+            this.id = id;
+            this.threadId = threadId;
+            this.address = address;
+            this.body = body;
+            this.date = date;
+            this.unread = unread;
+        }
+    }
+
+    // What messagesAfter found, and the watermark to continue from next time
+    public static final class Delta {
+        public final List<NewMessage> messages;
+        public final long watermark;
+
+        Delta(List<NewMessage> messages, long watermark) {
+            this.messages = messages;
+            this.watermark = watermark;
+        }
+    }
+
+    private static final String[] NEW_MESSAGE_PROJECTION = {
+            Telephony.Sms._ID,
+            Telephony.Sms.THREAD_ID,
+            Telephony.Sms.ADDRESS,
+            Telephony.Sms.BODY,
+            Telephony.Sms.DATE,
+            Telephony.Sms.READ,
+            Telephony.Sms.TYPE
+    };
+
+    // Leaves out threads without messages
+    private static final String BASE_SELECTION = Telephony.Threads.MESSAGE_COUNT + " > 0";
+
+    private final ContentResolver resolver;
+    // canonical address id -> address
+    private final Map<String, String> addresses;
+    // Canonical ids of blocked senders; their one-to-one threads are left out
+    private final Set<String> blockedIds;
+
+    private Conversations(ContentResolver resolver, Map<String, String> addresses, Set<String> blockedIds) {
+        this.resolver = resolver;
+        this.addresses = addresses;
+        this.blockedIds = blockedIds;
+    }
+
+    // Reads the canonical addresses and checks them against the blocklist once for a whole
+    // scroll through the inbox; null if the provider is unavailable
+    public static Conversations open(Context context) {
+        ContentResolver resolver = context.getContentResolver();
+        Map<String, String> addresses = SmsThreads.loadAddresses(resolver);
+        if (addresses == null) {
+            return null;
+        }
+
+        BlocklistSnapshot snapshot = BlocklistSnapshot.get(context);
+        long now = System.currentTimeMillis();
+        Set<String> blockedIds = new HashSet<>();
+        for (Map.Entry<String, String> entry : addresses.entrySet()) {
+            String normalizedNumber = PhoneNumberNormalizer.normalize(context, entry.getValue());
+            if (normalizedNumber != null && snapshot.isBlocked(normalizedNumber, now)) {
+                blockedIds.add(entry.getKey());
+            }
+        }
+        return new Conversations(resolver, addresses, blockedIds);
+    }
+
+    // The newest limit conversations, latest first; null if the provider is unavailable
+    public List<Conversation> firstPage(int limit) {
+        return query(BASE_SELECTION, null, LATEST_FIRST, limit);
+    }
+
+    // Up to limit conversations that come after the row (date, threadId), latest first
+    public List<Conversation> pageBefore(long date, long threadId, int limit) {
+        return query(BASE_SELECTION + " AND " + OLDER_THAN, keyArgs(date, threadId), LATEST_FIRST, limit);
+    }
+
+    // Up to limit conversations that come before the row (date, threadId), for scrolling back up
+    // after newer rows were dropped from memory; latest first like every page
+    public List<Conversation> pageAfter(long date, long threadId, int limit) {
+        List<Conversation> page = query(BASE_SELECTION + " AND " + NEWER_THAN, keyArgs(date, threadId), OLDEST_FIRST, limit);
+        if (page != null) {
+            Collections.reverse(page);
+        }
+        return page;
+    }
+
+    // The highest SMS _id so far, the watermark messagesAfter continues from; 0 if there are none
+    public static long latestMessageId(Context context) {
+        try (Cursor cursor = context.getContentResolver().query(Telephony.Sms.CONTENT_URI,
+                new String[]{Telephony.Sms._ID}, null, null, Telephony.Sms._ID + " DESC LIMIT 1")) {
+            return cursor != null && cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+    }
+
+    // Messages with an _id above the watermark, oldest first, leaving out blocked senders. The
+    // _id index makes this cost the number of new rows. Returns null when there are more than
+    // limit of them (a restore or an import), which is better served by reloading.
+    public static Delta messagesAfter(Context context, long watermark, int limit) {
+        BlocklistSnapshot snapshot = BlocklistSnapshot.get(context);
+        long now = System.currentTimeMillis();
+        List<NewMessage> messages = new ArrayList<>();
+        long latest = watermark;
+        try (Cursor cursor = context.getContentResolver().query(Telephony.Sms.CONTENT_URI, NEW_MESSAGE_PROJECTION,
+                Telephony.Sms._ID + " > ?", new String[]{Long.toString(watermark)},
+                Telephony.Sms._ID + " ASC LIMIT " + (limit + 1))) {
+            if (cursor == null) {
+                return new Delta(messages, watermark);
+            }
+            if (cursor.getCount() > limit) {
+                return null;
+            }
+            while (cursor.moveToNext()) {
+                // Blocked rows move the watermark too, so they are not read again
+                latest = cursor.getLong(0);
+                String address = cursor.getString(2);
+                String normalizedNumber = PhoneNumberNormalizer.normalize(context, address);
+                if (normalizedNumber != null && snapshot.isBlocked(normalizedNumber, now)) {
+                    continue;
+                }
+                boolean unread = cursor.getInt(6) == Telephony.Sms.MESSAGE_TYPE_INBOX && cursor.getInt(5) == 0;
+                messages.add(new NewMessage(cursor.getLong(0), cursor.getLong(1), address != null ? address : "Unknown",
+                        cursor.getString(3), cursor.getLong(4), unread));
+            }
+        }
+        return new Delta(messages, latest);
+    }
+
+    // The first limit conversations in the given order. The heap holds the nearest rows seen so
+    // far with the one to give up first at its head, so memory stays at limit rows however many
+    // threads match.
+    private List<Conversation> query(String selection, String[] selectionArgs, Comparator<Conversation> order,
+                                     int limit) {
+        PriorityQueue<Conversation> nearest = new PriorityQueue<>(limit + 1, Collections.reverseOrder(order));
+        try (Cursor cursor = resolver.query(SmsThreads.THREADS_URI, THREAD_PROJECTION, selection, selectionArgs, null)) {
+            if (cursor == null) {
+                return null;
+            }
+            while (cursor.moveToNext()) {
+                String recipientIds = cursor.getString(2);
+                // A one-to-one thread's recipient_ids is just the sender's canonical id
+                if (recipientIds != null && blockedIds.contains(recipientIds.trim())) {
+                    continue;
+                }
+                String address = addresses.get(firstRecipient(recipientIds));
+                nearest.add(new Conversation(cursor.getLong(0), address != null ? address : "Unknown",
+                        cursor.getString(3), cursor.getLong(1), 0));
+                if (nearest.size() > limit) {
+                    nearest.poll();
+                }
+            }
+        }
+        List<Conversation> page = new ArrayList<>(nearest);
+        Collections.sort(page, order);
+        if (page.isEmpty()) {
+            return page;
+        }
+        List<Long> threadIds = new ArrayList<>(page.size());
+        for (Conversation conversation : page) {
+            threadIds.add(conversation.threadId);
+        }
+
+        Map<Long, Integer> unreadCounts = loadUnreadCounts(threadIds);
+        for (int i = 0; i < page.size(); i++) {
+            Conversation conversation = page.get(i);
+            Integer unread = unreadCounts.get(conversation.threadId);
+            if (unread != null) {
+                page.set(i, new Conversation(conversation.threadId, conversation.address, conversation.snippet,
+                        conversation.date, unread));
+            }
+        }
+        return page;
+    }
+
+    private static String[] keyArgs(long date, long threadId) {
+        String dateArg = Long.toString(date);
+        return new String[]{dateArg, dateArg, Long.toString(threadId)};
+    }
+
+    // Only the unread inbox messages of this page's threads are read
+    private Map<Long, Integer> loadUnreadCounts(List<Long> threadIds) {
+        Map<Long, Integer> counts = new HashMap<>();
+        try (Cursor cursor = resolver.query(Telephony.Sms.Inbox.CONTENT_URI, new String[]{Telephony.Sms.THREAD_ID},
+                Telephony.Sms.READ + " = 0 AND " + Telephony.Sms.THREAD_ID + " IN (" + TextUtils.join(", ", threadIds) + ")",
+                null, null)) {
+            if (cursor == null) {
+                return counts;
+            }
+            while (cursor.moveToNext()) {
+                long threadId = cursor.getLong(0);
+                Integer count = counts.get(threadId);
+                counts.put(threadId, count == null ? 1 : count + 1);
+            }
+        }
+        return counts;
+    }
+
+    private static String firstRecipient(String recipientIds) {
+        if (recipientIds == null) {
+            return null;
+        }
+        String trimmed = recipientIds.trim();
+        int space = trimmed.indexOf(' ');
+        return space < 0 ? trimmed : trimmed.substring(0, space);
+    }
+}
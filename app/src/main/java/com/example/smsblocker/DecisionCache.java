@@ -0,0 +1,79 @@
+package com.example.smsblocker;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Remembers the sender decision for the most recent senders, so a flood from a handful of
+// numbers skips normalization, the blocklist and the sender rules after the first message.
+// Every entry carries the data version it was computed against; once
+// BlockedNumbersDatabaseHelper bumps the version, all older entries are misses without
+// anything having to be scanned or cleared. A decision based on a timed block also carries
+// the block's unblock time and is a miss from then on, since an expiry that is not yet
+// processed leaves the version unchanged.
+public final class DecisionCache {
+
+    static final int CAPACITY = 256;
+
+    private static final DecisionCache shared = new DecisionCache(CAPACITY);
+
+    private final LinkedHashMap<String, Decision> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public static final class Decision {
+        final boolean blocked;
+        final String rule;  // what blocked the sender, null when allowed
+        final long version;
+        final long expiresAt;  // when the block it is based on ends, 0 for never
+
+        Decision(boolean blocked, String rule, long version, long expiresAt) {
+            this.blocked = blocked;
+            this.rule = rule;
+            this.version = version;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    DecisionCache(final int capacity) {
+        // Access order turns the map into an LRU list
+        entries = new LinkedHashMap<String, Decision>(capacity * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Decision> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    public static DecisionCache shared() {
+        return shared;
+    }
+
+    // Returns the cached decision for the raw sender address if it is still current at now, or null
+    public synchronized Decision get(String sender, long version, long now) {
+        Decision decision = entries.get(sender);
+        if (decision == null || decision.version != version
+                || decision.expiresAt != 0 && now >= decision.expiresAt) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return decision;
+    }
+
+    public synchronized void put(String sender, Decision decision) {
+        entries.put(sender, decision);
+    }
+
+    public long hitCount() {
+        return hits.get();
+    }
+
+    public long missCount() {
+        return misses.get();
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.smsblocker;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Removes timed blocks when their unblock time arrives. Upcoming unblock times sit in a
+// min-heap and a single wall-clock alarm is armed for the earliest one; when it fires, every
+// entry that is due is deleted from the table in one transaction and dropped from the in-memory
+// blocklist. An AlarmManager alarm keeps counting while the device sleeps and starts the process
+// again if it was killed, which an in-process timer does neither of. Doze can still delay an
+// alarm a little, so the read paths also compare unblock times with the current time.
+public final class ExpiryScheduler {
+
+    private static final String TAG = "ExpiryScheduler";
+
+    // Loads the pending expiries and runs the alarm's work, in that order
+    private static final ExecutorService worker = Executors.newSingleThreadExecutor();
+    private static final Object lock = new Object();
+
+    // Earliest unblock time first; entries replaced by a later schedule() call are skipped lazily
+    private static final PriorityQueue<Expiry> heap = new PriorityQueue<>();
+    // normalized number -> unblock time currently in force
+    private static final Map<String, Long> scheduled = new HashMap<>();
+
+    private static volatile Context appContext;
+    // Unblock time the alarm is armed for; Long.MAX_VALUE when none is
+    private static long nextRunTime = Long.MAX_VALUE;
+
+    private ExpiryScheduler() {
+    }
+
+    // Loads the pending unblock times from the table once per process
+    public static void start(Context context) {
+        synchronized (lock) {
+            if (appContext != null) {
+                return;
+            }
+            appContext = context.getApplicationContext();
+        }
+        worker.execute(() -> {
+            Map<String, Long> pending = BlockedNumbersDatabaseHelper.getInstance(appContext).getPendingExpiries();
+            synchronized (lock) {
+                for (Map.Entry<String, Long> entry : pending.entrySet()) {
+                    if (!scheduled.containsKey(entry.getKey())) {
+                        enqueue(entry.getKey(), entry.getValue());
+                    }
+                }
+                reschedule(appContext);
+            }
+            Log.d(TAG, "Scheduled " + pending.size() + " timed blocks");
+        });
+    }
+
+    // Records a new unblock time for the number; 0 cancels any pending expiry
+    public static void schedule(Context context, String normalizedNumber, long unblockTime) {
+        start(context);
+        synchronized (lock) {
+            if (unblockTime <= 0) {
+                scheduled.remove(normalizedNumber);
+                return;
+            }
+            enqueue(normalizedNumber, unblockTime);
+            reschedule(context.getApplicationContext());
+        }
+    }
+
+    private static void enqueue(String normalizedNumber, long unblockTime) {
+        scheduled.put(normalizedNumber, unblockTime);
+        heap.add(new Expiry(normalizedNumber, unblockTime));
+    }
+
+    // Arms the alarm for the earliest live entry; callers hold the lock
+    private static void reschedule(Context context) {
+        Expiry head = heap.peek();
+        while (head != null && !isLive(head)) {
+            heap.poll();
+            head = heap.peek();
+        }
+        if (head == null || head.unblockTime >= nextRunTime) {
+            return;
+        }
+        nextRunTime = head.unblockTime;
+        arm(context, head.unblockTime);
+    }
+
+    // There is one alarm: setting it again replaces the earlier time
+    private static void arm(Context context, long triggerAtMillis) {
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        if (alarmManager == null) {
+            return;
+        }
+        PendingIntent operation = PendingIntent.getBroadcast(context, 0, new Intent(context, AlarmReceiver.class),
+                PendingIntent.FLAG_UPDATE_CURRENT
+                        | (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M ? PendingIntent.FLAG_IMMUTABLE : 0));
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && !alarmManager.canScheduleExactAlarms()) {
+            // Without the exact alarm grant it may fire some minutes late; reads check the time meanwhile
+            alarmManager.setAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, triggerAtMillis, operation);
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, triggerAtMillis, operation);
+        } else {
+            alarmManager.setExact(AlarmManager.RTC_WAKEUP, triggerAtMillis, operation);
+        }
+    }
+
+    // The alarm's work: deletes everything due and arms the alarm for what is left. Runs on the
+    // worker, or on the test thread.
+    static void expireDue() {
+        long now = System.currentTimeMillis();
+        List<String> due = new ArrayList<>();
+        synchronized (lock) {
+            nextRunTime = Long.MAX_VALUE;
+            while (!heap.isEmpty() && heap.peek().unblockTime <= now) {
+                Expiry expiry = heap.poll();
+                if (isLive(expiry)) {
+                    scheduled.remove(expiry.normalizedNumber);
+                    due.add(expiry.normalizedNumber);
+                }
+            }
+        }
+
+        if (!due.isEmpty()) {
+            // Everything that expired together is persisted as one batch
+            List<String> removed = BlockedNumbersDatabaseHelper.getInstance(appContext).deleteExpired(due, now);
+            Log.d(TAG, "Expired " + removed.size() + " timed blocks");
+        }
+
+        synchronized (lock) {
+            reschedule(appContext);
+        }
+    }
+
+    // Started by the alarm, also after the process was killed; the pending expiries are loaded first
+    public static final class AlarmReceiver extends BroadcastReceiver {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            final PendingResult result = goAsync();
+            start(context);
+            worker.execute(() -> {
+                try {
+                    expireDue();
+                } finally {
+                    result.finish();
+                }
+            });
+        }
+    }
+
+    private static boolean isLive(Expiry expiry) {
+        Long unblockTime = scheduled.get(expiry.normalizedNumber);
+        return unblockTime != null && unblockTime == expiry.unblockTime;
+    }
+
+    private static final class Expiry implements Comparable<Expiry> {
+        final String normalizedNumber;
+        final long unblockTime;
+
+        Expiry(String normalizedNumber, long unblockTime) {
+            this.normalizedNumber = normalizedNumber;
+            this.unblockTime = unblockTime;
+        }
+
+        @Override
+        public int compareTo(Expiry other) {
+            return Long.compare(unblockTime, other.unblockTime);
+        }
+    }
+}
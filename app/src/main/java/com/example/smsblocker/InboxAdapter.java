@@ -4,11 +4,11 @@ import android.Manifest;
 import android.annotation.SuppressLint;
 import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
 import android.database.Cursor;
 import android.net.Uri;
 import android.provider.Telephony;
+import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -16,27 +16,68 @@ import android.widget.PopupMenu;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.annotation.NonNull;
 import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
-public class InboxAdapter extends RecyclerView.Adapter<InboxAdapter.InboxViewHolder> {
 
-    private List<SmsMessage> smsMessages;
-    private OnItemClickListener listener;
-    private Context context;
+// Inbox rows as a ListAdapter: the fragment submits an immutable list of the visible
+// conversations and DiffUtil works out the inserts, moves and changes on a background thread,
+// so refreshes keep the scroll position and animate. Ids are the provider's thread ids, stable
+// across refreshes.
+public class InboxAdapter extends ListAdapter<SmsMessage, InboxAdapter.InboxViewHolder> {
+
+    private static final DiffUtil.ItemCallback<SmsMessage> DIFF_CALLBACK = new DiffUtil.ItemCallback<SmsMessage>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull SmsMessage oldItem, @NonNull SmsMessage newItem) {
+            return stableId(oldItem) == stableId(newItem);
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull SmsMessage oldItem, @NonNull SmsMessage newItem) {
+            return oldItem.getTimestamp() == newItem.getTimestamp()
+                    && oldItem.getUnreadCount() == newItem.getUnreadCount()
+                    && TextUtils.equals(oldItem.getBody(), newItem.getBody())
+                    && TextUtils.equals(oldItem.getSenderName(), newItem.getSenderName());
+        }
+    };
+
+    private final OnItemClickListener listener;
+    private final OnRowsRemovedListener rowsRemovedListener;
+    private final Context context;
 
     public interface OnItemClickListener {
         void onItemClick(SmsMessage smsMessage);
     }
 
-    public InboxAdapter(Context context, List<SmsMessage> smsMessages, OnItemClickListener listener) {
+    // The adapter does not own the rows; whoever submits them drops the removed ones and resubmits
+    public interface OnRowsRemovedListener {
+        void onRowsRemoved(List<SmsMessage> removed);
+    }
+
+    public InboxAdapter(Context context, OnItemClickListener listener, OnRowsRemovedListener rowsRemovedListener) {
+        super(DIFF_CALLBACK);
         this.context = context;
-        this.smsMessages = smsMessages;
         this.listener = listener;
+        this.rowsRemovedListener = rowsRemovedListener;
+        setHasStableIds(true);
+    }
+
+    // Conversation rows are keyed by thread; single messages by their own id
+    private static long stableId(SmsMessage smsMessage) {
+        return smsMessage.getThreadId() != -1 ? smsMessage.getThreadId() : -smsMessage.getMessageId() - 2;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return stableId(getItem(position));
     }
 
     @Override
@@ -48,13 +89,13 @@ public class InboxAdapter extends RecyclerView.Adapter<InboxAdapter.InboxViewHol
 
     @Override
     public void onBindViewHolder(InboxViewHolder holder, int position) {
-        SmsMessage smsMessage = smsMessages.get(position);
+        SmsMessage smsMessage = getItem(position);
 
-        if (smsMessage.isBlocked()) {
-            return; // Skip binding if the message is blocked
+        if (smsMessage.getUnreadCount() > 0) {
+            holder.senderName.setText(smsMessage.getSenderName() + " (" + smsMessage.getUnreadCount() + ")");
+        } else {
+            holder.senderName.setText(smsMessage.getSenderName());
         }
-
-        holder.senderName.setText(smsMessage.getSenderName());
         holder.lastMessage.setText(smsMessage.getBody());
 
         SimpleDateFormat sdf = new SimpleDateFormat("dd-MM-yyyy hh:mm a", Locale.getDefault());
@@ -73,17 +114,6 @@ public class InboxAdapter extends RecyclerView.Adapter<InboxAdapter.InboxViewHol
         });
     }
 
-    @Override
-    public int getItemCount() {
-        int nonBlockedCount = 0;
-        for (SmsMessage smsMessage : smsMessages) {
-            if (!smsMessage.isBlocked()) {
-                nonBlockedCount++;
-            }
-        }
-        return nonBlockedCount;
-    }
-
     private void showContextMenu(SmsMessage smsMessage, View view) {
         PopupMenu popupMenu = new PopupMenu(context, view);
         popupMenu.getMenuInflater().inflate(R.menu.sms_context_menu, popupMenu.getMenu());
@@ -110,25 +140,16 @@ public class InboxAdapter extends RecyclerView.Adapter<InboxAdapter.InboxViewHol
     }
 
     private void blockSms(SmsMessage smsMessage) {
-        smsMessage.setBlocked(true);
-
-        BlockedNumbersDatabaseHelper dbHelper = new BlockedNumbersDatabaseHelper(context);
+        BlockedNumbersDatabaseHelper dbHelper = BlockedNumbersDatabaseHelper.getInstance(context);
         dbHelper.blockNumber(smsMessage.getSenderPhoneNumber());
 
-        SharedPreferences prefs = context.getSharedPreferences("BlockedSMS", Context.MODE_PRIVATE);
-        SharedPreferences.Editor editor = prefs.edit();
-        editor.putBoolean(smsMessage.getSenderPhoneNumber(), true);
-        editor.apply();
-
-        smsMessages.remove(smsMessage);
-        notifyDataSetChanged();
+        rowsRemovedListener.onRowsRemoved(Collections.singletonList(smsMessage));
 
         Toast.makeText(context, "Blocked SMS from " + smsMessage.getSenderName(), Toast.LENGTH_SHORT).show();
     }
 
     private void deleteSms(SmsMessage smsMessage) {
-        smsMessages.remove(smsMessage);
-        notifyDataSetChanged();
+        rowsRemovedListener.onRowsRemoved(Collections.singletonList(smsMessage));
 
         Toast.makeText(context, "Deleted SMS from " + smsMessage.getSenderName(), Toast.LENGTH_SHORT).show();
     }
@@ -137,29 +158,18 @@ public class InboxAdapter extends RecyclerView.Adapter<InboxAdapter.InboxViewHol
         // Get all SMS messages that are not yet blocked
         List<SmsMessage> allSmsMessages = getAllSmsMessages();  // You can implement this method to fetch all SMS messages
 
-        BlockedNumbersDatabaseHelper dbHelper = new BlockedNumbersDatabaseHelper(context);
-        SharedPreferences prefs = context.getSharedPreferences("BlockedSMS", Context.MODE_PRIVATE);
-        SharedPreferences.Editor editor = prefs.edit();
+        BlockedNumbersDatabaseHelper dbHelper = BlockedNumbersDatabaseHelper.getInstance(context);
+        List<String> senders = new ArrayList<>(allSmsMessages.size());
 
         for (SmsMessage smsMessage : allSmsMessages) {
-            // Block each SMS message
-            smsMessage.setBlocked(true);  // Mark SMS as blocked
-
-            // Block the sender in the database
-            dbHelper.blockNumber(smsMessage.getSenderPhoneNumber());
-
-            // Save the blocked state in SharedPreferences
-            editor.putBoolean(smsMessage.getSenderPhoneNumber(), true);
-
-            // Remove the blocked SMS from the list
-            smsMessages.remove(smsMessage);  // Remove the blocked SMS from the list
+            senders.add(smsMessage.getSenderPhoneNumber());
         }
 
-        // Commit the changes to SharedPreferences
-        editor.apply();
+        // Block every sender in the database in one transaction
+        dbHelper.blockNumbers(senders);
 
-        // Notify the adapter to update the list view
-        notifyDataSetChanged();
+        // Every sender shown is blocked now
+        rowsRemovedListener.onRowsRemoved(getCurrentList());
 
         // Show a toast indicating that all SMS messages are blocked
         Toast.makeText(context, "Blocked all SMS messages", Toast.LENGTH_SHORT).show();
@@ -220,8 +230,7 @@ public class InboxAdapter extends RecyclerView.Adapter<InboxAdapter.InboxViewHol
 
 
     private void deleteAll() {
-        smsMessages.clear();
-        notifyDataSetChanged();
+        rowsRemovedListener.onRowsRemoved(getCurrentList());
 
         Toast.makeText(context, "All SMS deleted", Toast.LENGTH_SHORT).show();
     }
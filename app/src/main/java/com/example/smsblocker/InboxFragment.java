@@ -1,18 +1,17 @@
 package com.example.smsblocker;
 
 import android.Manifest;
-import android.annotation.SuppressLint;
 import android.content.ContentResolver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
-import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
-import android.database.Cursor;
+import android.database.ContentObserver;
 import android.net.Uri;
-import android.os.AsyncTask;
+import android.os.Build;
 import android.os.Bundle;
-import android.provider.ContactsContract;
+import android.os.Handler;
+import android.os.Looper;
 import android.provider.Telephony;
 import android.util.Log;
 import android.view.LayoutInflater;
@@ -29,38 +28,78 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 public class InboxFragment extends Fragment {
 
     private RecyclerView recyclerViewInbox;
     private InboxAdapter inboxAdapter;
+    // The working copy of the rows; the adapter is handed immutable snapshots of it
     private List<SmsMessage> smsMessages;
     private SmsReceiver smsReceiver;
-    private Set<String> blockedNumbersSet;
     private boolean isSmsFetched = false;
 
     private static final int PERMISSION_REQUEST_CODE = 1;
 
+    // Conversations are loaded a page at a time and at most MAX_PAGES pages are kept; rows
+    // scrolled far past are dropped and read again if the user scrolls back
+    private static final int PAGE_SIZE = 50;
+    private static final int MAX_PAGES = 5;
+    private static final int MAX_ROWS = PAGE_SIZE * MAX_PAGES;
+    // Start loading the next page this many rows before the end of what is loaded
+    private static final int PREFETCH_DISTANCE = 15;
+
+    private enum Direction { FIRST, OLDER, NEWER }
+
+    private LinearLayoutManager layoutManager;
+    // Opened by the first page load of each refresh
+    private Conversations conversations;
+    // The page load in progress, null when none is
+    private ScreenLoader.Handle pageLoad;
+    private boolean reachedEnd;
+    private boolean droppedNewer;
+
+    // New messages are merged in from the SMS provider instead of reloading the list; a full
+    // reload happens only when messages were deleted
+    private static final int MAX_DELTA = 200;
+    // Highest SMS _id the list reflects, -1 until the first page is shown
+    private long watermark = -1;
+    // Part of every page's load key; bumped when the provider's rows changed under the list, so
+    // the reload never joins a scan that started before the change. Only touched on the main thread.
+    private static int listGeneration;
+    private ContentObserver smsObserver;
+    private ScreenLoader.Handle deltaLoad;
+    // Another change arrived while a delta was loading
+    private boolean deltaPending;
+
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater, ViewGroup container,
                              Bundle savedInstanceState) {
         View view = inflater.inflate(R.layout.fragment_inbox, container, false);
 
         recyclerViewInbox = view.findViewById(R.id.recyclerViewInbox);
-        recyclerViewInbox.setLayoutManager(new LinearLayoutManager(getContext()));
+        layoutManager = new LinearLayoutManager(getContext());
+        recyclerViewInbox.setLayoutManager(layoutManager);
 
         smsMessages = new ArrayList<>();
-        inboxAdapter = new InboxAdapter(getContext(), smsMessages, smsMessage -> {
+        inboxAdapter = new InboxAdapter(getContext(), smsMessage -> {
             Intent intent = new Intent(getContext(), ChatActivity.class);
             intent.putExtra("sender_name", smsMessage.getSenderName());
             intent.putExtra("sender_number", smsMessage.getSenderPhoneNumber());
             startActivity(intent);
+        }, removed -> {
+            smsMessages.removeAll(removed);
+            publishRows();
         });
         recyclerViewInbox.setAdapter(inboxAdapter);
+        recyclerViewInbox.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                prefetchAround();
+            }
+        });
 
 
         loadBlockedNumbers();
@@ -81,22 +120,9 @@ public class InboxFragment extends Fragment {
     }
 
     private void loadBlockedNumbers() {
-        blockedNumbersSet = new HashSet<>();
-        SharedPreferences prefs = getContext().getSharedPreferences("BlockedSMS", Context.MODE_PRIVATE);
-        blockedNumbersSet.addAll(prefs.getStringSet("blocked_numbers", new HashSet<>()));
-
-        BlockedNumbersDatabaseHelper dbHelper = new BlockedNumbersDatabaseHelper(getContext());
-        Cursor cursor = dbHelper.getBlockedNumbers();
-
-        if (cursor != null) {
-            while (cursor.moveToNext()) {
-                @SuppressLint("Range")
-                String blockedNumber = cursor.getString(cursor.getColumnIndex("phone_number"));
-                blockedNumbersSet.add(blockedNumber);
-            }
-            cursor.close();
-        }
-        Log.d("SMSBlocker", "Blocked Numbers Loaded: " + blockedNumbersSet);
+        // The database blocklist is checked through the shared snapshot instead of being copied here
+        BlocklistSnapshot snapshot = BlocklistSnapshot.get(getContext());
+        Log.d("SMSBlocker", "Blocked Numbers Loaded: " + snapshot.size());
     }
 
     private void requestPermissionsIfNeeded() {
@@ -128,6 +154,7 @@ public class InboxFragment extends Fragment {
             }
 
             if (allGranted) {
+                ContactNameCache.get(requireContext()).refresh();
                 setupSmsReceiver();
                 fetchSMSMessages();
             } else {
@@ -146,93 +173,307 @@ public class InboxFragment extends Fragment {
     @Override
     public void onDestroyView() {
         super.onDestroyView();
+        // The view lifecycle has already cancelled them
+        pageLoad = null;
+        deltaLoad = null;
+        deltaPending = false;
+        watermark = -1;
+        // The new view starts with an empty list, so it has to be fetched again when shown
+        isSmsFetched = false;
+        if (smsObserver != null) {
+            requireContext().getContentResolver().unregisterContentObserver(smsObserver);
+            smsObserver = null;
+        }
         if (smsReceiver != null) {
             requireContext().unregisterReceiver(smsReceiver);
             smsReceiver = null;
         }
     }
 
-    private class FetchSMSMessagesTask extends AsyncTask<Void, Void, List<SmsMessage>> {
-        @Override
-        protected List<SmsMessage> doInBackground(Void... voids) {
-            if (getContext() == null) return null;
-
-            ContentResolver contentResolver = requireContext().getContentResolver();
-            Cursor cursor = contentResolver.query(
-                    Telephony.Sms.CONTENT_URI,
-                    null,
-                    null,
-                    null,
-                    Telephony.Sms.DEFAULT_SORT_ORDER
-            );
-
-            if (cursor != null) {
-                Set<String> uniqueNumbers = new HashSet<>();
-                List<SmsMessage> messagesList = new ArrayList<>();
-
-                while (cursor.moveToNext()) {
-                    String senderPhoneNumber = cursor.getString(cursor.getColumnIndexOrThrow(Telephony.Sms.ADDRESS));
-                    if (uniqueNumbers.contains(senderPhoneNumber)) continue;
-                    uniqueNumbers.add(senderPhoneNumber);
-
-                    String body = cursor.getString(cursor.getColumnIndexOrThrow(Telephony.Sms.BODY));
-                    long timestamp = cursor.getLong(cursor.getColumnIndexOrThrow(Telephony.Sms.DATE));
-                    int readState = cursor.getInt(cursor.getColumnIndexOrThrow(Telephony.Sms.READ));
-                    long messageId = cursor.getLong(cursor.getColumnIndexOrThrow(Telephony.Sms._ID));
-
-                    String senderName = getContactName(getContext(), senderPhoneNumber);
-                    boolean isBlocked = blockedNumbersSet.contains(senderPhoneNumber);
-
-                    if (!isBlocked) {
-                        messagesList.add(new SmsMessage(
-                                senderName != null ? senderName : senderPhoneNumber,
-                                senderPhoneNumber,
-                                body,
-                                timestamp,
-                                readState,
-                                messageId,
-                                isBlocked
-                        ));
-                    }
-                }
-                cursor.close();
-                return messagesList;
+    // A page of inbox rows, and the query it was read with so the next page can continue it
+    private static final class Page {
+        final Conversations source;
+        final List<SmsMessage> rows;
+        // Set on the first page only: the highest SMS _id before it was read
+        final long watermark;
+
+        Page(Conversations source, List<SmsMessage> rows, long watermark) {
+            this.source = source;
+            this.rows = rows;
+            this.watermark = watermark;
+        }
+    }
+
+    // Runs on ScreenLoader's pool; reads nothing from the fragment, so a fragment that replaced
+    // this one can share the load. Returns null if the provider is unavailable.
+    private static Page readPage(Context context, Conversations source, Direction direction,
+                                 long keyDate, long keyThreadId) {
+        if (source == null) {
+            source = Conversations.open(context);
+            if (source == null) {
+                return null;
             }
+        }
+
+        List<Conversations.Conversation> page;
+        long watermark = -1;
+        if (direction == Direction.FIRST) {
+            // Read before the page: a message stored in between is merged again, which is harmless
+            watermark = Conversations.latestMessageId(context);
+            page = source.firstPage(PAGE_SIZE);
+        } else if (direction == Direction.OLDER) {
+            page = source.pageBefore(keyDate, keyThreadId, PAGE_SIZE);
+        } else {
+            page = source.pageAfter(keyDate, keyThreadId, PAGE_SIZE);
+        }
+        if (page == null) {
             return null;
         }
 
-        @Override
-        protected void onPostExecute(List<SmsMessage> result) {
-            if (isAdded() && getContext() != null) {
-                if (result != null) {
-                    smsMessages.clear();
-                    smsMessages.addAll(result);
-                    Collections.sort(smsMessages, (sms1, sms2) -> Long.compare(sms2.getTimestamp(), sms1.getTimestamp()));
-                    inboxAdapter.notifyDataSetChanged();
-                } else {
-                    Toast.makeText(getContext(), "Failed to fetch SMS messages", Toast.LENGTH_SHORT).show();
-                }
+        // Names come from the shared cache, not a contacts query per conversation
+        ContactNameCache contactNames = ContactNameCache.get(context);
+        List<SmsMessage> messagesList = new ArrayList<>(page.size());
+        for (Conversations.Conversation conversation : page) {
+            String senderName = contactNames.loadNameFor(conversation.address);
+            messagesList.add(new SmsMessage(
+                    senderName != null ? senderName : conversation.address,
+                    conversation.address,
+                    conversation.snippet,
+                    conversation.date,
+                    conversation.threadId,
+                    conversation.unreadCount
+            ));
+        }
+        return new Page(source, messagesList, watermark);
+    }
+
+    private void showPage(Direction direction, Page page) {
+        pageLoad = null;
+        if (page == null) {
+            Toast.makeText(getContext(), "Failed to fetch SMS messages", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        conversations = page.source;
+        List<SmsMessage> result = page.rows;
+
+        // A page lands wherever the user has scrolled to meanwhile, so rows past MAX_ROWS are only
+        // dropped from the far side of the screen, keeping what is visible and PREFETCH_DISTANCE
+        // rows around it; the window may stay larger until the next page trims it
+        int firstVisible = layoutManager.findFirstVisibleItemPosition();
+        int lastVisible = layoutManager.findLastVisibleItemPosition();
+        if (direction == Direction.NEWER) {
+            smsMessages.addAll(0, result);
+            droppedNewer = result.size() == PAGE_SIZE;
+            // The visible rows moved down by the rows added above them
+            int keep = lastVisible != RecyclerView.NO_POSITION
+                    ? lastVisible + result.size() + PREFETCH_DISTANCE + 1 : smsMessages.size();
+            int excess = Math.min(smsMessages.size() - MAX_ROWS, smsMessages.size() - keep);
+            if (excess > 0) {
+                smsMessages.subList(smsMessages.size() - excess, smsMessages.size()).clear();
+                reachedEnd = false;
             }
+        } else {
+            smsMessages.addAll(result);
+            reachedEnd = result.size() < PAGE_SIZE;
+            int excess = Math.min(smsMessages.size() - MAX_ROWS, firstVisible - PREFETCH_DISTANCE);
+            if (excess > 0) {
+                smsMessages.subList(0, excess).clear();
+                droppedNewer = true;
+            }
+        }
+        publishRows();
+        if (direction == Direction.FIRST) {
+            watermark = page.watermark;
+            registerSmsObserver();
+            // A short first page may not fill the screen, so no scroll would ever ask for more
+            prefetchAround();
         }
     }
 
-    private void fetchSMSMessages() {
-        new FetchSMSMessagesTask().execute();
+    private void registerSmsObserver() {
+        if (smsObserver != null) {
+            return;
+        }
+        smsObserver = new ContentObserver(new Handler(Looper.getMainLooper())) {
+            @Override
+            public void onChange(boolean selfChange) {
+                onSmsChanged(false);
+            }
+
+            // Android 11 and later say what kind of change it was
+            @Override
+            public void onChange(boolean selfChange, @NonNull Collection<Uri> uris, int flags) {
+                onSmsChanged((flags & ContentResolver.NOTIFY_DELETE) != 0);
+            }
+        };
+        requireContext().getContentResolver().registerContentObserver(Telephony.Sms.CONTENT_URI, true, smsObserver);
+    }
+
+    private void onSmsChanged(boolean deleted) {
+        if (watermark < 0 || getView() == null) {
+            return;
+        }
+        if (deleted) {
+            reloadSMSMessages();
+            return;
+        }
+        if (deltaLoad != null) {
+            deltaPending = true;
+            return;
+        }
+
+        final Context context = requireContext().getApplicationContext();
+        final long from = watermark;
+        deltaLoad = ScreenLoader.shared().load(getViewLifecycleOwner(), "inbox/delta/" + from, () -> {
+            Conversations.Delta delta = Conversations.messagesAfter(context, from, MAX_DELTA);
+            // Before Android 11 a delete is only noticed when it took the newest message with it
+            if (delta != null && delta.messages.isEmpty() && Build.VERSION.SDK_INT < Build.VERSION_CODES.R
+                    && Conversations.latestMessageId(context) < from) {
+                return null;
+            }
+            return delta;
+        }, new ScreenLoader.Callback<Conversations.Delta>() {
+            @Override
+            public void onLoaded(Conversations.Delta delta) {
+                deltaLoad = null;
+                if (delta == null) {
+                    // Too many new messages to merge, or some were deleted
+                    reloadSMSMessages();
+                    return;
+                }
+                watermark = Math.max(watermark, delta.watermark);
+                mergeNewMessages(delta.messages);
+                if (deltaPending) {
+                    deltaPending = false;
+                    onSmsChanged(false);
+                }
+            }
+
+            @Override
+            public void onFailed(Exception e) {
+                deltaLoad = null;
+                deltaPending = false;
+            }
+        });
     }
 
-    @SuppressLint("Range")
-    public String getContactName(Context context, String phoneNumber) {
-        if (context == null) return phoneNumber; // Return original number if context is null
+    // Moves each new message's conversation to the top with the new snippet, or inserts it. The
+    // list holds at most MAX_ROWS rows, so finding a conversation in it is bounded too.
+    private void mergeNewMessages(List<Conversations.NewMessage> messages) {
+        for (Conversations.NewMessage message : messages) {
+            int index = indexOfThread(message.threadId);
+            SmsMessage existing = index >= 0 ? smsMessages.get(index) : null;
+            if (existing != null && message.date <= existing.getTimestamp()) {
+                continue;  // the loaded snippet already shows it
+            }
+            if (droppedNewer) {
+                // The top of the list is not loaded; scrolling up reads the conversation there
+                if (existing != null) {
+                    smsMessages.remove(index);
+                }
+                continue;
+            }
 
-        Uri uri = Uri.withAppendedPath(ContactsContract.PhoneLookup.CONTENT_FILTER_URI, Uri.encode(phoneNumber));
-        String[] projection = new String[]{ContactsContract.PhoneLookup.DISPLAY_NAME};
+            String senderName;
+            if (existing != null) {
+                senderName = existing.getSenderName();
+            } else {
+                String contactName = ContactNameCache.get(requireContext()).nameFor(message.address);
+                senderName = contactName != null ? contactName : message.address;
+            }
+            int unreadCount = (existing != null ? existing.getUnreadCount() : 0) + (message.unread ? 1 : 0);
+            SmsMessage row = new SmsMessage(senderName,
+                    existing != null ? existing.getSenderPhoneNumber() : message.address,
+                    message.body, message.date, message.threadId, unreadCount);
 
-        try (Cursor cursor = context.getContentResolver().query(uri, projection, null, null, null)) {
-            if (cursor != null && cursor.moveToFirst()) {
-                return cursor.getString(cursor.getColumnIndexOrThrow(ContactsContract.PhoneLookup.DISPLAY_NAME));
+            if (existing != null) {
+                smsMessages.remove(index);
+            }
+            smsMessages.add(0, row);
+            if (smsMessages.size() > MAX_ROWS) {
+                smsMessages.remove(smsMessages.size() - 1);
+                reachedEnd = false;
             }
         }
+        // One diff for the whole delta: the adapter sees the moves and changes, not a reload
+        publishRows();
+    }
 
-        return phoneNumber;
+    private int indexOfThread(long threadId) {
+        for (int i = 0; i < smsMessages.size(); i++) {
+            if (smsMessages.get(i).getThreadId() == threadId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Like fetchSMSMessages, but for after the messages changed: no page still being read joins it
+    private void reloadSMSMessages() {
+        listGeneration++;
+        fetchSMSMessages();
+    }
+
+    // Shows the first page as soon as it is read; later pages follow the scroll position
+    private void fetchSMSMessages() {
+        // Pages and deltas still loading for the old list are dropped
+        if (pageLoad != null) {
+            pageLoad.cancel();
+            pageLoad = null;
+        }
+        if (deltaLoad != null) {
+            deltaLoad.cancel();
+            deltaLoad = null;
+        }
+        deltaPending = false;
+        watermark = -1;
+        conversations = null;
+        reachedEnd = false;
+        droppedNewer = false;
+        smsMessages.clear();
+        publishRows();
+        loadPage(Direction.FIRST, null);
+    }
+
+    // Rows only reach the working list from background reads that already left blocked senders
+    // out, so publishing is a copy; AsyncListDiffer diffs it against the shown list off the main thread
+    private void publishRows() {
+        inboxAdapter.submitList(Collections.unmodifiableList(new ArrayList<>(smsMessages)));
+    }
+
+    private void prefetchAround() {
+        if (pageLoad != null || smsMessages.isEmpty()) {
+            return;
+        }
+        int lastVisible = layoutManager.findLastVisibleItemPosition();
+        int firstVisible = layoutManager.findFirstVisibleItemPosition();
+        if (!reachedEnd && lastVisible >= smsMessages.size() - PREFETCH_DISTANCE) {
+            loadPage(Direction.OLDER, smsMessages.get(smsMessages.size() - 1));
+        } else if (droppedNewer && firstVisible != RecyclerView.NO_POSITION && firstVisible <= PREFETCH_DISTANCE) {
+            loadPage(Direction.NEWER, smsMessages.get(0));
+        }
+    }
+
+    // Pages load while the view exists; a tab switch drops the callback, and a new inbox asking
+    // for the same page joins the load still running instead of scanning again
+    private void loadPage(final Direction direction, SmsMessage key) {
+        final Context context = requireContext().getApplicationContext();
+        final Conversations source = conversations;
+        final long keyDate = key != null ? key.getTimestamp() : 0;
+        final long keyThreadId = key != null ? key.getThreadId() : -1;
+        String loadKey = "inbox/" + listGeneration + "/" + direction + "/" + keyDate + "/" + keyThreadId;
+        pageLoad = ScreenLoader.shared().load(getViewLifecycleOwner(), loadKey,
+                () -> readPage(context, source, direction, keyDate, keyThreadId),
+                new ScreenLoader.Callback<Page>() {
+                    @Override
+                    public void onLoaded(Page page) {
+                        showPage(direction, page);
+                    }
+
+                    @Override
+                    public void onFailed(Exception e) {
+                        showPage(direction, null);
+                    }
+                });
     }
 }
\ No newline at end of file
@@ -0,0 +1,55 @@
+package com.example.smsblocker;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Holds the compiled keyword automaton used by SmsReceiver. When keyword rules change the
+// automaton is recompiled on a background thread and swapped in once it is ready; until
+// then the receiver keeps matching against the previous one.
+public final class KeywordFilter {
+
+    private static final String TAG = "KeywordFilter";
+
+    private static final ExecutorService compiler = Executors.newSingleThreadExecutor();
+    private static final Object loadLock = new Object();
+    private static volatile KeywordMatcher current;
+
+    private KeywordFilter() {
+    }
+
+    public static KeywordMatcher get(Context context) {
+        KeywordMatcher matcher = current;
+        if (matcher != null) {
+            return matcher;
+        }
+        synchronized (loadLock) {
+            if (current == null) {
+                current = compile(context);
+            }
+            return current;
+        }
+    }
+
+    // Recompiles the automaton off the calling thread
+    public static void rebuildAsync(Context context) {
+        final Context appContext = context.getApplicationContext();
+        compiler.execute(() -> {
+            KeywordMatcher matcher = compile(appContext);
+            synchronized (loadLock) {
+                current = matcher;
+            }
+        });
+    }
+
+    private static KeywordMatcher compile(Context context) {
+        BlockedNumbersDatabaseHelper dbHelper = BlockedNumbersDatabaseHelper.getInstance(context);
+        List<String> keywords = dbHelper.getKeywordRules();
+        KeywordMatcher matcher = KeywordMatcher.compile(keywords);
+        Log.d(TAG, "Compiled " + matcher.keywordCount() + " keyword rules");
+        return matcher;
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.smsblocker;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Aho-Corasick automaton compiled from all keyword rules. A message body is scanned once,
+// character by character, so matching stays linear in the body length no matter how many
+// keywords are loaded. Matching is case-insensitive.
+public final class KeywordMatcher {
+
+    private static final KeywordMatcher EMPTY = new KeywordMatcher(new String[0]);
+
+    private final String[] keywords;
+    // Goto function: the edges of each state are sorted by character for a binary search
+    private final int[] edgeStart;
+    private final char[] edgeChars;
+    private final int[] edgeTargets;
+    private final int[] failure;
+    // Index of a keyword ending at this state (directly or through its failure chain), or -1
+    private final int[] output;
+
+    private KeywordMatcher(String[] keywords) {
+        this.keywords = keywords;
+
+        // Build the keyword trie
+        List<int[]> children = new ArrayList<>();    // per state: pairs of (char, target)
+        List<Integer> childCounts = new ArrayList<>();
+        List<Integer> outputs = new ArrayList<>();
+        children.add(new int[4]);
+        childCounts.add(0);
+        outputs.add(-1);
+
+        for (int k = 0; k < keywords.length; k++) {
+            String keyword = keywords[k];
+            int state = 0;
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = keyword.charAt(i);
+                int next = findChild(children.get(state), childCounts.get(state), c);
+                if (next < 0) {
+                    next = children.size();
+                    children.add(new int[4]);
+                    childCounts.add(0);
+                    outputs.add(-1);
+                    addChild(children, childCounts, state, c, next);
+                }
+                state = next;
+            }
+            if (outputs.get(state) < 0) {
+                outputs.set(state, k);
+            }
+        }
+
+        // Flatten the edges with each state's children sorted by character
+        int stateCount = children.size();
+        edgeStart = new int[stateCount + 1];
+        for (int s = 0; s < stateCount; s++) {
+            edgeStart[s + 1] = edgeStart[s] + childCounts.get(s);
+        }
+        edgeChars = new char[edgeStart[stateCount]];
+        edgeTargets = new int[edgeStart[stateCount]];
+        for (int s = 0; s < stateCount; s++) {
+            int[] pairs = children.get(s);
+            int count = childCounts.get(s);
+            long[] packed = new long[count];
+            for (int i = 0; i < count; i++) {
+                packed[i] = ((long) pairs[i * 2] << 32) | pairs[i * 2 + 1];
+            }
+            Arrays.sort(packed);
+            for (int i = 0; i < count; i++) {
+                edgeChars[edgeStart[s] + i] = (char) (packed[i] >>> 32);
+                edgeTargets[edgeStart[s] + i] = (int) packed[i];
+            }
+        }
+
+        // Breadth-first pass to compute failure links and merged outputs
+        failure = new int[stateCount];
+        output = new int[stateCount];
+        for (int s = 0; s < stateCount; s++) {
+            output[s] = outputs.get(s);
+        }
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int e = edgeStart[0]; e < edgeStart[1]; e++) {
+            failure[edgeTargets[e]] = 0;
+            queue.add(edgeTargets[e]);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (int e = edgeStart[state]; e < edgeStart[state + 1]; e++) {
+                char c = edgeChars[e];
+                int target = edgeTargets[e];
+                int fallback = failure[state];
+                int next;
+                while ((next = transition(fallback, c)) < 0 && fallback != 0) {
+                    fallback = failure[fallback];
+                }
+                failure[target] = next >= 0 ? next : 0;
+                if (output[target] < 0) {
+                    output[target] = output[failure[target]];
+                }
+                queue.add(target);
+            }
+        }
+    }
+
+    public static KeywordMatcher compile(List<String> keywords) {
+        List<String> normalized = new ArrayList<>(keywords.size());
+        for (String keyword : keywords) {
+            if (keyword != null && !keyword.trim().isEmpty()) {
+                normalized.add(lowerCase(keyword.trim()));
+            }
+        }
+        if (normalized.isEmpty()) {
+            return EMPTY;
+        }
+        return new KeywordMatcher(normalized.toArray(new String[0]));
+    }
+
+    public static KeywordMatcher empty() {
+        return EMPTY;
+    }
+
+    public int keywordCount() {
+        return keywords.length;
+    }
+
+    // Returns the first keyword found in the text, or null if none occurs
+    public String findFirst(CharSequence text) {
+        if (text == null || keywords.length == 0) {
+            return null;
+        }
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            int next;
+            while ((next = transition(state, c)) < 0 && state != 0) {
+                state = failure[state];
+            }
+            state = next >= 0 ? next : 0;
+            if (output[state] >= 0) {
+                return keywords[output[state]];
+            }
+        }
+        return null;
+    }
+
+    private int transition(int state, char c) {
+        int low = edgeStart[state];
+        int high = edgeStart[state + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char edge = edgeChars[mid];
+            if (edge < c) {
+                low = mid + 1;
+            } else if (edge > c) {
+                high = mid - 1;
+            } else {
+                return edgeTargets[mid];
+            }
+        }
+        return -1;
+    }
+
+    private static int findChild(int[] pairs, int count, char c) {
+        for (int i = 0; i < count; i++) {
+            if (pairs[i * 2] == c) {
+                return pairs[i * 2 + 1];
+            }
+        }
+        return -1;
+    }
+
+    private static void addChild(List<int[]> children, List<Integer> childCounts, int state, char c, int target) {
+        int[] pairs = children.get(state);
+        int count = childCounts.get(state);
+        if (count * 2 == pairs.length) {
+            pairs = Arrays.copyOf(pairs, pairs.length * 2);
+            children.set(state, pairs);
+        }
+        pairs[count * 2] = c;
+        pairs[count * 2 + 1] = target;
+        childCounts.set(state, count + 1);
+    }
+
+    private static String lowerCase(String keyword) {
+        char[] chars = keyword.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(chars[i]);
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.smsblocker;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+// Blocks every message whose body contains the keyword (case-insensitive)
+@Entity(tableName = KeywordRule.TABLE, indices = {@Index(value = "keyword", unique = true)})
+public class KeywordRule {
+
+    public static final String TABLE = "keyword_rules";
+
+    @PrimaryKey(autoGenerate = true)
+    @ColumnInfo(name = "_id")
+    private final long id;
+
+    @NonNull
+    @ColumnInfo(name = "keyword")
+    private final String keyword;
+
+    public KeywordRule(long id, @NonNull String keyword) {
+        this.id = id;
+        this.keyword = keyword;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    @NonNull
+    public String getKeyword() {
+        return keyword;
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.smsblocker;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import java.util.List;
+
+@Dao
+public interface KeywordRuleDao {
+
+    // Returns -1 if the keyword is already a rule
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    long insert(KeywordRule rule);
+
+    @Query("DELETE FROM keyword_rules WHERE keyword = :keyword")
+    int delete(String keyword);
+
+    @Query("SELECT keyword FROM keyword_rules ORDER BY keyword ASC")
+    List<String> getKeywords();
+}
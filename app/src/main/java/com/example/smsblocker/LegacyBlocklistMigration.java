@@ -0,0 +1,72 @@
+package com.example.smsblocker;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Older versions also kept block state in the "BlockedSMS" preferences: a true flag per number
+// written by the inbox, and a "blocked_numbers" string set. SharedPreferences parses the whole
+// file on first access, so the numbers are moved into the database once and the file is
+// emptied down to a marker that says so. Large imports were once stored only in a binary spam
+// list file (BinaryBlocklist.LEGACY_FILE); those move into the database too, and the file goes.
+final class LegacyBlocklistMigration {
+
+    private static final String TAG = "Database";
+    static final String PREFS_NAME = "BlockedSMS";
+    static final String KEY_BLOCKED_NUMBERS = "blocked_numbers";
+    static final String KEY_MIGRATED = "migrated_to_database";
+
+    private LegacyBlocklistMigration() {
+    }
+
+    static void migrate(Context context, BlockedNumbersDatabaseHelper dbHelper) {
+        migrateSpamList(context, dbHelper);
+
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        if (prefs.getBoolean(KEY_MIGRATED, false)) {
+            return;
+        }
+
+        List<String> phoneNumbers = new ArrayList<>();
+        for (Map.Entry<String, ?> entry : prefs.getAll().entrySet()) {
+            Object value = entry.getValue();
+            if (KEY_BLOCKED_NUMBERS.equals(entry.getKey()) && value instanceof Set) {
+                for (Object phoneNumber : (Set<?>) value) {
+                    phoneNumbers.add(String.valueOf(phoneNumber));
+                }
+            } else if (Boolean.TRUE.equals(value)) {
+                phoneNumbers.add(entry.getKey());
+            }
+        }
+
+        if (!phoneNumbers.isEmpty()) {
+            int migrated = dbHelper.blockNumbers(phoneNumbers);
+            Log.d(TAG, "Moved " + migrated + " blocked numbers from preferences into the database");
+        }
+        // commit, not apply: the marker must be on disk before anything reads the blocklist again
+        prefs.edit().clear().putBoolean(KEY_MIGRATED, true).commit();
+    }
+
+    private static void migrateSpamList(Context context, BlockedNumbersDatabaseHelper dbHelper) {
+        File file = new File(context.getFilesDir(), BinaryBlocklist.LEGACY_FILE);
+        if (!file.exists()) {
+            return;
+        }
+        BinaryBlocklist spamList = BinaryBlocklist.load(file);
+        List<String> phoneNumbers = spamList.verify() ? spamList.numbers() : new ArrayList<String>();
+        if (!phoneNumbers.isEmpty()) {
+            int migrated = dbHelper.blockNumbers(phoneNumbers);
+            Log.d(TAG, "Moved " + migrated + " imported spam numbers into the database");
+        }
+        // Deleted only after the numbers are committed, so a crash repeats the (idempotent) move
+        if (!file.delete()) {
+            Log.w(TAG, "Could not delete " + file.getName());
+        }
+    }
+}
@@ -5,6 +5,7 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.os.Bundle;
 import android.provider.Telephony;
+import android.view.Menu;
 import android.view.MenuItem;
 
 
@@ -26,6 +27,9 @@ public class MainActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
+        // Read the address book in the background before the first list needs a name
+        ContactNameCache.get(this).preload();
+
         setupToolbar();
         checkAndRequestDefaultSmsApp();
         setupBottomNavigation(savedInstanceState);
@@ -43,6 +47,32 @@ public class MainActivity extends AppCompatActivity {
         unregisterReceiver(smsReceiver);
     }
 
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.app_bar_menu, menu);
+        // The inbox-wide actions are offered from the inbox's long-press menu
+        menu.findItem(R.id.menu_delete_all).setVisible(false);
+        menu.findItem(R.id.menu_block_all).setVisible(false);
+        menu.findItem(R.id.menu_block_first_four).setVisible(false);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == R.id.menu_view_blocked) {
+            // On the back stack, so Back returns to the tab that was open
+            getSupportFragmentManager().beginTransaction()
+                    .replace(R.id.fragment_container, new QuarantineFragment())
+                    .addToBackStack(null)
+                    .commit();
+            return true;
+        } else if (item.getItemId() == R.id.menu_set_default_sms) {
+            setAsDefaultSmsApp();
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
     private void setupToolbar() {
         Toolbar toolbar = findViewById(R.id.toolbar);
         setSupportActionBar(toolbar);
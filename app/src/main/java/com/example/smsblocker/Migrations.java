@@ -0,0 +1,208 @@
+package com.example.smsblocker;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+// The schema steps the old SQLiteOpenHelper ran in onUpgrade, as Room migrations. Versions 1-7
+// are the hand-written schema; version 8 rebuilds the tables exactly as Room declares them, and
+// later versions are plain Room migrations.
+final class Migrations {
+
+    private static final String TAG = "Database";
+
+    private static final String TABLE_BLOCKED_NUMBERS = BlockedNumber.TABLE;
+    private static final String COLUMN_ID = "_id";
+    private static final String COLUMN_PHONE_NUMBER = "phone_number";
+    private static final String COLUMN_UNBLOCK_TIME = "unblock_time";
+    private static final String COLUMN_IS_RETENTION_SET = "is_retention_set";
+    private static final String COLUMN_NORMALIZED_NUMBER = "normalized_number";
+    private static final String INDEX_NORMALIZED_NUMBER = "idx_blocked_numbers_normalized_number";
+    private static final String INDEX_UNBLOCK_TIME = "idx_blocked_numbers_unblock_time";
+
+    private Migrations() {
+    }
+
+    // Every migration in order; 3 -> 4 needs the normalizer to backfill normalized_number
+    static Migration[] all(PhoneNumberNormalizer normalizer) {
+        return new Migration[]{
+                MIGRATION_1_2, MIGRATION_2_3, migration3To4(normalizer), MIGRATION_4_5, MIGRATION_5_6,
+                MIGRATION_6_7, MIGRATION_7_8, MIGRATION_8_9, MIGRATION_9_10
+        };
+    }
+
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE " + TABLE_BLOCKED_NUMBERS + " ADD COLUMN " + COLUMN_UNBLOCK_TIME + " INTEGER NOT NULL DEFAULT 0;");
+        }
+    };
+
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE " + TABLE_BLOCKED_NUMBERS + " ADD COLUMN " + COLUMN_IS_RETENTION_SET + " INTEGER NOT NULL DEFAULT 0;");
+        }
+    };
+
+    static Migration migration3To4(final PhoneNumberNormalizer normalizer) {
+        return new Migration(3, 4) {
+            @Override
+            public void migrate(@NonNull SupportSQLiteDatabase db) {
+                // Version 3 installs created from scratch never got is_retention_set
+                if (!hasColumn(db, COLUMN_IS_RETENTION_SET)) {
+                    db.execSQL("ALTER TABLE " + TABLE_BLOCKED_NUMBERS + " ADD COLUMN " + COLUMN_IS_RETENTION_SET + " INTEGER NOT NULL DEFAULT 0;");
+                }
+                db.execSQL("ALTER TABLE " + TABLE_BLOCKED_NUMBERS + " ADD COLUMN " + COLUMN_NORMALIZED_NUMBER + " TEXT;");
+                backfillNormalizedNumbers(db, normalizer);
+                db.execSQL("CREATE INDEX " + INDEX_NORMALIZED_NUMBER + " ON " + TABLE_BLOCKED_NUMBERS +
+                        " (" + COLUMN_NORMALIZED_NUMBER + ");");
+            }
+        };
+    }
+
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE keyword_rules (" +
+                    COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                    "keyword TEXT NOT NULL UNIQUE);");
+        }
+    };
+
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE regex_rules (" +
+                    COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                    "pattern TEXT NOT NULL, " +
+                    "target TEXT NOT NULL, " +
+                    "priority INTEGER NOT NULL DEFAULT 0);");
+        }
+    };
+
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            removeDuplicateNumbers(db);
+            db.execSQL("DROP INDEX IF EXISTS " + INDEX_NORMALIZED_NUMBER + ";");
+            db.execSQL("CREATE UNIQUE INDEX " + INDEX_NORMALIZED_NUMBER + " ON " + TABLE_BLOCKED_NUMBERS +
+                    " (" + COLUMN_NORMALIZED_NUMBER + ");");
+            db.execSQL("CREATE INDEX " + INDEX_UNBLOCK_TIME + " ON " + TABLE_BLOCKED_NUMBERS +
+                    " (" + COLUMN_UNBLOCK_TIME + ");");
+        }
+    };
+
+    // Room checks the schema it opens against its entities, and SQLite cannot add NOT NULL to the
+    // primary keys or turn keyword's inline UNIQUE into a named index in place, so copy each
+    // table into the Room layout. Row ids are kept.
+    static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE blocked_numbers_new (" +
+                    "`_id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                    "`phone_number` TEXT NOT NULL, " +
+                    "`unblock_time` INTEGER NOT NULL DEFAULT 0, " +
+                    "`is_retention_set` INTEGER NOT NULL DEFAULT 0, " +
+                    "`normalized_number` TEXT)");
+            db.execSQL("INSERT INTO blocked_numbers_new (_id, phone_number, unblock_time, is_retention_set, normalized_number) " +
+                    "SELECT _id, phone_number, unblock_time, is_retention_set, normalized_number FROM blocked_numbers");
+            db.execSQL("DROP TABLE blocked_numbers");
+            db.execSQL("ALTER TABLE blocked_numbers_new RENAME TO blocked_numbers");
+            db.execSQL("CREATE UNIQUE INDEX " + INDEX_NORMALIZED_NUMBER + " ON " + TABLE_BLOCKED_NUMBERS +
+                    " (" + COLUMN_NORMALIZED_NUMBER + ")");
+            db.execSQL("CREATE INDEX " + INDEX_UNBLOCK_TIME + " ON " + TABLE_BLOCKED_NUMBERS +
+                    " (" + COLUMN_UNBLOCK_TIME + ")");
+
+            db.execSQL("CREATE TABLE keyword_rules_new (" +
+                    "`_id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                    "`keyword` TEXT NOT NULL)");
+            db.execSQL("INSERT INTO keyword_rules_new (_id, keyword) SELECT _id, keyword FROM keyword_rules");
+            db.execSQL("DROP TABLE keyword_rules");
+            db.execSQL("ALTER TABLE keyword_rules_new RENAME TO keyword_rules");
+            db.execSQL("CREATE UNIQUE INDEX index_keyword_rules_keyword ON keyword_rules (keyword)");
+
+            db.execSQL("CREATE TABLE regex_rules_new (" +
+                    "`_id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                    "`pattern` TEXT NOT NULL, " +
+                    "`target` TEXT NOT NULL, " +
+                    "`priority` INTEGER NOT NULL DEFAULT 0)");
+            db.execSQL("INSERT INTO regex_rules_new (_id, pattern, target, priority) " +
+                    "SELECT _id, pattern, target, priority FROM regex_rules");
+            db.execSQL("DROP TABLE regex_rules");
+            db.execSQL("ALTER TABLE regex_rules_new RENAME TO regex_rules");
+        }
+    };
+
+    // Daily rollups for BlockStats
+    static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `sender_daily_stats` (" +
+                    "`day` INTEGER NOT NULL, " +
+                    "`sender` TEXT NOT NULL, " +
+                    "`blocked` INTEGER NOT NULL DEFAULT 0, " +
+                    "PRIMARY KEY(`day`, `sender`))");
+            db.execSQL("CREATE TABLE IF NOT EXISTS `rule_daily_stats` (" +
+                    "`day` INTEGER NOT NULL, " +
+                    "`rule` TEXT NOT NULL, " +
+                    "`hits` INTEGER NOT NULL DEFAULT 0, " +
+                    "PRIMARY KEY(`day`, `rule`))");
+        }
+    };
+
+    // The blocklist version BlocklistSnapshot checks its file against; no row means version 0
+    static final Migration MIGRATION_9_10 = new Migration(9, 10) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `blocklist_version` (" +
+                    "`id` INTEGER NOT NULL, " +
+                    "`version` INTEGER NOT NULL DEFAULT 0, " +
+                    "PRIMARY KEY(`id`))");
+        }
+    };
+
+    // Keeps one row per normalized number: the one blocked the longest (0 means permanently),
+    // and the oldest row among equals
+    private static void removeDuplicateNumbers(SupportSQLiteDatabase db) {
+        String expiry = "(CASE WHEN %1$s." + COLUMN_UNBLOCK_TIME + " = 0 THEN " + Long.MAX_VALUE +
+                " ELSE %1$s." + COLUMN_UNBLOCK_TIME + " END)";
+        String kept = String.format(expiry, "kept");
+        String row = String.format(expiry, TABLE_BLOCKED_NUMBERS);
+        int removed = db.delete(TABLE_BLOCKED_NUMBERS, "EXISTS (SELECT 1 FROM " + TABLE_BLOCKED_NUMBERS + " AS kept" +
+                " WHERE kept." + COLUMN_NORMALIZED_NUMBER + " = " + TABLE_BLOCKED_NUMBERS + "." + COLUMN_NORMALIZED_NUMBER +
+                " AND kept." + COLUMN_ID + " != " + TABLE_BLOCKED_NUMBERS + "." + COLUMN_ID +
+                " AND (" + kept + " > " + row +
+                " OR (" + kept + " = " + row + " AND kept." + COLUMN_ID + " < " + TABLE_BLOCKED_NUMBERS + "." + COLUMN_ID + ")))",
+                null);
+        Log.d(TAG, "Removed " + removed + " duplicate blocked numbers");
+    }
+
+    private static void backfillNormalizedNumbers(SupportSQLiteDatabase db, PhoneNumberNormalizer normalizer) {
+        try (Cursor cursor = db.query("SELECT " + COLUMN_ID + ", " + COLUMN_PHONE_NUMBER + " FROM " + TABLE_BLOCKED_NUMBERS)) {
+            ContentValues values = new ContentValues();
+            while (cursor.moveToNext()) {
+                values.put(COLUMN_NORMALIZED_NUMBER, normalizer.normalize(cursor.getString(1)));
+                db.update(TABLE_BLOCKED_NUMBERS, SQLiteDatabase.CONFLICT_NONE, values, COLUMN_ID + " = ?",
+                        new Object[]{cursor.getLong(0)});
+            }
+        }
+    }
+
+    private static boolean hasColumn(SupportSQLiteDatabase db, String column) {
+        try (Cursor cursor = db.query("PRAGMA table_info(" + TABLE_BLOCKED_NUMBERS + ")")) {
+            int nameIndex = cursor.getColumnIndexOrThrow("name");
+            while (cursor.moveToNext()) {
+                if (column.equals(cursor.getString(nameIndex))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
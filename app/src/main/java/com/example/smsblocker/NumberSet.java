@@ -0,0 +1,246 @@
+package com.example.smsblocker;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+// Set of normalized phone numbers. Numeric keys ("+15551234567", short codes) are packed into
+// a long and stored in an open-addressing table with linear probing, which costs 8 bytes per
+// slot and no object per entry; contains() on a numeric key does not allocate. Anything that
+// does not fit (alphanumeric sender IDs, prefix rules) goes into a small side set.
+// Not thread-safe: BlocklistSnapshot copies a set before changing it and never changes a
+// published one.
+public final class NumberSet {
+
+    private static final long EMPTY = 0L;
+    // Set on numbers that start with '+', so "+1555" and "1555" stay distinct
+    private static final long PLUS_FLAG = 1L << 62;
+    // A leading 1 is prepended to keep leading zeros, so 17 digits is the most that fits in 62 bits
+    private static final int MAX_DIGITS = 17;
+    private static final double MAX_LOAD = 0.75;
+    private static final double GROWTH = 1.5;
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] table;
+    private int numericSize;
+    private final Set<String> others;
+
+    public NumberSet() {
+        this(0);
+    }
+
+    public NumberSet(int expectedSize) {
+        table = new long[capacityFor(expectedSize)];
+        others = new HashSet<>();
+    }
+
+    private NumberSet(NumberSet source) {
+        table = source.table.clone();
+        numericSize = source.numericSize;
+        others = new HashSet<>(source.others);
+    }
+
+    // An independent copy; copying the table is one array clone, not a rehash
+    public NumberSet copy() {
+        return new NumberSet(this);
+    }
+
+    public boolean add(String normalizedNumber) {
+        if (normalizedNumber == null) {
+            return false;
+        }
+        long key = encode(normalizedNumber);
+        if (key == EMPTY) {
+            return others.add(normalizedNumber);
+        }
+        if (numericSize + 1 > table.length * MAX_LOAD) {
+            resize((int) Math.ceil(table.length * GROWTH));
+        }
+        if (insert(table, key)) {
+            numericSize++;
+            return true;
+        }
+        return false;
+    }
+
+    public boolean contains(String normalizedNumber) {
+        if (normalizedNumber == null) {
+            return false;
+        }
+        long key = encode(normalizedNumber);
+        if (key == EMPTY) {
+            return !others.isEmpty() && others.contains(normalizedNumber);
+        }
+        return slotOf(table, key) >= 0;
+    }
+
+    // Backward-shift deletion: later entries of the same probe run move up into the hole, so
+    // lookups never need tombstones and the table does not degrade after many removals
+    public boolean remove(String normalizedNumber) {
+        if (normalizedNumber == null) {
+            return false;
+        }
+        long key = encode(normalizedNumber);
+        if (key == EMPTY) {
+            return others.remove(normalizedNumber);
+        }
+        long[] slots = table;
+        int hole = slotOf(slots, key);
+        if (hole < 0) {
+            return false;
+        }
+        int next = hole;
+        while (true) {
+            if (++next == slots.length) {
+                next = 0;
+            }
+            long moved = slots[next];
+            if (moved == EMPTY) {
+                break;
+            }
+            // An entry may fill the hole unless its home slot lies cyclically in (hole, next]
+            int home = indexFor(moved, slots.length);
+            boolean homeInRange = hole < next ? home > hole && home <= next : home > hole || home <= next;
+            if (!homeInRange) {
+                slots[hole] = moved;
+                hole = next;
+            }
+        }
+        slots[hole] = EMPTY;
+        numericSize--;
+        return true;
+    }
+
+    public int size() {
+        return numericSize + others.size();
+    }
+
+    // Bytes held by the numeric table, for sizing checks
+    long tableBytes() {
+        return (long) table.length * 8;
+    }
+
+    // Written as the packed keys plus the side set, so reading it back never parses a number
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(numericSize);
+        for (long key : table) {
+            if (key != EMPTY) {
+                out.writeLong(key);
+            }
+        }
+        out.writeInt(others.size());
+        for (String other : others) {
+            out.writeUTF(other);
+        }
+    }
+
+    public static NumberSet readFrom(DataInputStream in) throws IOException {
+        int numericSize = in.readInt();
+        if (numericSize < 0) {
+            throw new IOException("Corrupt number set");
+        }
+        NumberSet set = new NumberSet(numericSize);
+        for (int i = 0; i < numericSize; i++) {
+            long key = in.readLong();
+            if (key == EMPTY) {
+                throw new IOException("Corrupt number set");
+            }
+            if (insert(set.table, key)) {
+                set.numericSize++;
+            }
+        }
+        int otherCount = in.readInt();
+        for (int i = 0; i < otherCount; i++) {
+            set.others.add(in.readUTF());
+        }
+        return set;
+    }
+
+    // Slot holding key, or -1
+    private static int slotOf(long[] slots, long key) {
+        int index = indexFor(key, slots.length);
+        while (true) {
+            long slot = slots[index];
+            if (slot == key) {
+                return index;
+            }
+            if (slot == EMPTY) {
+                return -1;
+            }
+            if (++index == slots.length) {
+                index = 0;
+            }
+        }
+    }
+
+    private void resize(int capacity) {
+        long[] resized = new long[capacity];
+        for (long key : table) {
+            if (key != EMPTY) {
+                insert(resized, key);
+            }
+        }
+        table = resized;
+    }
+
+    private static boolean insert(long[] slots, long key) {
+        int index = indexFor(key, slots.length);
+        while (slots[index] != EMPTY) {
+            if (slots[index] == key) {
+                return false;
+            }
+            if (++index == slots.length) {
+                index = 0;
+            }
+        }
+        slots[index] = key;
+        return true;
+    }
+
+    // Maps the mixed hash onto [0, length) without requiring a power-of-two table
+    private static int indexFor(long key, int length) {
+        long hash = mix(key) >>> 32;
+        return (int) ((hash * length) >>> 32);
+    }
+
+    // Packs "+?digits" into a non-zero long, or returns EMPTY if the number does not fit
+    static long encode(CharSequence number) {
+        int length = number.length();
+        int start = length > 0 && number.charAt(0) == '+' ? 1 : 0;
+        int digits = length - start;
+        if (digits == 0 || digits > MAX_DIGITS) {
+            return EMPTY;
+        }
+        long value = 1;
+        for (int i = start; i < length; i++) {
+            char c = number.charAt(i);
+            if (c < '0' || c > '9') {
+                return EMPTY;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return start == 1 ? value | PLUS_FLAG : value;
+    }
+
+    // The number encode packed into key
+    static String decode(long key) {
+        String digits = Long.toString(key & ~PLUS_FLAG).substring(1);
+        return (key & PLUS_FLAG) != 0 ? "+" + digits : digits;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        return Math.max(MIN_CAPACITY, (int) Math.ceil(expectedSize / MAX_LOAD) + 1);
+    }
+
+    // murmur3 finalizer, as in BloomFilter
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.smsblocker;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Groups the PDUs of a broadcast by sender and reassembles concatenated messages, so the
+// receiver makes one block decision per sender and body rules see the full text. Parts of a
+// concatenated message that arrive in separate broadcasts are kept in a small bounded buffer
+// (keyed by sender and UDH reference number) until the message completes or times out.
+public final class PduBatcher {
+
+    static final int MAX_PENDING_MESSAGES = 32;
+    static final long PENDING_TIMEOUT_MILLIS = 5 * 60 * 1000;
+
+    // sender + reference number -> parts received so far, oldest first
+    private final LinkedHashMap<String, PendingMessage> pending = new LinkedHashMap<>();
+
+    // One decoded PDU
+    public static final class Part {
+        final String address;
+        final String body;
+        final Concatenation concatenation;  // null for a single-part message
+
+        public Part(String address, String body, Concatenation concatenation) {
+            this.address = address;
+            this.body = body != null ? body : "";
+            this.concatenation = concatenation;
+        }
+    }
+
+    // The concatenation information element of a PDU's user data header
+    public static final class Concatenation {
+        final int reference;
+        final int total;
+        final int sequence;
+
+        Concatenation(int reference, int total, int sequence) {
+            this.reference = reference;
+            this.total = total;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final class PendingMessage {
+        final String[] parts;
+        final long firstSeen;
+        int received;
+
+        PendingMessage(int total, long firstSeen) {
+            this.parts = new String[total];
+            this.firstSeen = firstSeen;
+        }
+
+        String join() {
+            StringBuilder text = new StringBuilder();
+            for (String part : parts) {
+                if (part != null) {
+                    text.append(part);
+                }
+            }
+            return text.toString();
+        }
+    }
+
+    // Returns sender -> message texts, in the order the senders appear in the broadcast
+    public synchronized Map<String, List<String>> batch(List<Part> parts, long now) {
+        expire(now);
+
+        Map<String, StringBuilder> singleParts = new LinkedHashMap<>();
+        Map<String, List<String>> messages = new LinkedHashMap<>();
+        List<String> touchedKeys = new ArrayList<>();
+
+        for (Part part : parts) {
+            String address = part.address != null ? part.address : "";
+            if (!messages.containsKey(address)) {
+                messages.put(address, new ArrayList<String>());
+            }
+
+            Concatenation concatenation = part.concatenation;
+            if (concatenation == null || concatenation.total <= 1
+                    || concatenation.sequence < 1 || concatenation.sequence > concatenation.total) {
+                // Without a usable header the parts of one broadcast are already in order
+                StringBuilder text = singleParts.get(address);
+                if (text == null) {
+                    text = new StringBuilder();
+                    singleParts.put(address, text);
+                }
+                text.append(part.body);
+                continue;
+            }
+
+            String key = address + '#' + concatenation.reference + '/' + concatenation.total;
+            PendingMessage message = pending.get(key);
+            if (message == null) {
+                message = new PendingMessage(concatenation.total, now);
+                pending.put(key, message);
+            }
+            if (message.parts[concatenation.sequence - 1] == null) {
+                message.received++;
+            }
+            message.parts[concatenation.sequence - 1] = part.body;
+            if (!touchedKeys.contains(key)) {
+                touchedKeys.add(key);
+            }
+        }
+
+        for (Map.Entry<String, StringBuilder> entry : singleParts.entrySet()) {
+            messages.get(entry.getKey()).add(entry.getValue().toString());
+        }
+        for (String key : touchedKeys) {
+            PendingMessage message = pending.get(key);
+            String address = key.substring(0, key.lastIndexOf('#'));
+            // Incomplete messages are still checked with what has arrived so far
+            messages.get(address).add(message.join());
+            if (message.received == message.parts.length) {
+                pending.remove(key);
+            }
+        }
+
+        while (pending.size() > MAX_PENDING_MESSAGES) {
+            Iterator<String> oldest = pending.keySet().iterator();
+            oldest.next();
+            oldest.remove();
+        }
+        return messages;
+    }
+
+    synchronized int pendingCount() {
+        return pending.size();
+    }
+
+    private void expire(long now) {
+        Iterator<PendingMessage> iterator = pending.values().iterator();
+        while (iterator.hasNext()) {
+            if (now - iterator.next().firstSeen > PENDING_TIMEOUT_MILLIS) {
+                iterator.remove();
+            }
+        }
+    }
+
+    // Reads the concatenation element from a 3GPP SMS-DELIVER PDU, or returns null if there is none
+    public static Concatenation parseConcatenation(byte[] pdu) {
+        try {
+            int i = 0;
+            i += 1 + (pdu[i] & 0xff);              // SMSC address
+            int firstOctet = pdu[i++] & 0xff;
+            if ((firstOctet & 0x03) != 0) {
+                return null;                         // not an SMS-DELIVER
+            }
+            boolean hasHeader = (firstOctet & 0x40) != 0;
+            int addressDigits = pdu[i++] & 0xff;
+            i += 1 + (addressDigits + 1) / 2;        // type of address + semi-octets
+            i += 1 + 1 + 7 + 1;                      // PID, DCS, timestamp, user data length
+            if (!hasHeader) {
+                return null;
+            }
+
+            int headerEnd = i + 1 + (pdu[i] & 0xff);
+            i++;
+            while (i + 1 < headerEnd) {
+                int id = pdu[i++] & 0xff;
+                int length = pdu[i++] & 0xff;
+                if (id == 0x00 && length == 3) {
+                    return new Concatenation(pdu[i] & 0xff, pdu[i + 1] & 0xff, pdu[i + 2] & 0xff);
+                }
+                if (id == 0x08 && length == 4) {
+                    int reference = ((pdu[i] & 0xff) << 8) | (pdu[i + 1] & 0xff);
+                    return new Concatenation(reference, pdu[i + 2] & 0xff, pdu[i + 3] & 0xff);
+                }
+                i += length;
+            }
+            return null;
+        } catch (ArrayIndexOutOfBoundsException e) {
+            return null;                             // truncated PDU
+        }
+    }
+}
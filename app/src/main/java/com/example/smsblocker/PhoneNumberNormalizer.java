@@ -0,0 +1,152 @@
+package com.example.smsblocker;
+
+import android.content.Context;
+import android.telephony.TelephonyManager;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+// Turns the many ways a phone number can be written ("+1 555-0100", "15550100", "00441234...")
+// into one canonical E.164-style key. Every blocklist store and cache is keyed on this value.
+public final class PhoneNumberNormalizer {
+
+    // Numbers this short are operator short codes and have no country code
+    private static final int MAX_SHORT_CODE_LENGTH = 6;
+
+    // A trailing wildcard turns a blocklist entry into a prefix rule ("+1800*")
+    public static final char PREFIX_WILDCARD = '*';
+
+    // ISO country -> {calling code, international (IDD) prefix, trunk prefix}
+    private static final Map<String, String[]> COUNTRY_RULES = new HashMap<>();
+
+    static {
+        COUNTRY_RULES.put("US", new String[]{"1", "011", "1"});
+        COUNTRY_RULES.put("CA", new String[]{"1", "011", "1"});
+        COUNTRY_RULES.put("GB", new String[]{"44", "00", "0"});
+        COUNTRY_RULES.put("IE", new String[]{"353", "00", "0"});
+        COUNTRY_RULES.put("DE", new String[]{"49", "00", "0"});
+        COUNTRY_RULES.put("FR", new String[]{"33", "00", "0"});
+        COUNTRY_RULES.put("IT", new String[]{"39", "00", ""});
+        COUNTRY_RULES.put("ES", new String[]{"34", "00", ""});
+        COUNTRY_RULES.put("AU", new String[]{"61", "0011", "0"});
+        COUNTRY_RULES.put("IN", new String[]{"91", "00", "0"});
+        COUNTRY_RULES.put("PK", new String[]{"92", "00", "0"});
+        COUNTRY_RULES.put("BD", new String[]{"880", "00", "0"});
+        COUNTRY_RULES.put("AE", new String[]{"971", "00", "0"});
+        COUNTRY_RULES.put("SA", new String[]{"966", "00", "0"});
+        COUNTRY_RULES.put("EG", new String[]{"20", "00", "0"});
+        COUNTRY_RULES.put("NG", new String[]{"234", "009", "0"});
+        COUNTRY_RULES.put("TR", new String[]{"90", "00", "0"});
+    }
+
+    private static volatile PhoneNumberNormalizer defaultInstance;
+
+    private final String callingCode;
+    private final String internationalPrefix;
+    private final String trunkPrefix;
+
+    public PhoneNumberNormalizer(String countryIso) {
+        String[] rules = countryIso != null ? COUNTRY_RULES.get(countryIso.toUpperCase(Locale.ROOT)) : null;
+        if (rules == null) {
+            // Unknown country: only the universal "00" international prefix can be resolved
+            rules = new String[]{"", "00", ""};
+        }
+        this.callingCode = rules[0];
+        this.internationalPrefix = rules[1];
+        this.trunkPrefix = rules[2];
+    }
+
+    // Normalizer for the country of the SIM (falling back to the network, then the device locale)
+    public static PhoneNumberNormalizer forContext(Context context) {
+        PhoneNumberNormalizer instance = defaultInstance;
+        if (instance == null) {
+            instance = new PhoneNumberNormalizer(detectCountryIso(context));
+            defaultInstance = instance;
+        }
+        return instance;
+    }
+
+    public static String normalize(Context context, String phoneNumber) {
+        return forContext(context).normalize(phoneNumber);
+    }
+
+    public String normalize(String phoneNumber) {
+        if (phoneNumber == null) {
+            return null;
+        }
+
+        String trimmed = phoneNumber.trim();
+        if (isPrefixRule(trimmed)) {
+            // Prefixes are always expanded as national numbers, even when shorter than a short code
+            String prefix = normalize(trimmed.substring(0, trimmed.length() - 1), false);
+            return prefix + PREFIX_WILDCARD;
+        }
+        return normalize(trimmed, true);
+    }
+
+    public static boolean isPrefixRule(String normalizedNumber) {
+        return normalizedNumber != null && normalizedNumber.length() > 1
+                && normalizedNumber.charAt(normalizedNumber.length() - 1) == PREFIX_WILDCARD;
+    }
+
+    private String normalize(String trimmed, boolean allowShortCode) {
+        StringBuilder digits = new StringBuilder(trimmed.length());
+        boolean hasPlus = false;
+        for (int i = 0; i < trimmed.length(); i++) {
+            char c = trimmed.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            } else if (c == '+' && digits.length() == 0) {
+                hasPlus = true;
+            } else if (Character.isLetter(c)) {
+                // Alphanumeric sender IDs ("HDFCBK", "Amazon") are matched case-insensitively
+                return trimmed.toLowerCase(Locale.ROOT);
+            }
+        }
+
+        if (digits.length() == 0) {
+            return trimmed;
+        }
+        if (hasPlus) {
+            return "+" + digits;
+        }
+        if (startsWith(digits, internationalPrefix) || startsWith(digits, "00")) {
+            String prefix = startsWith(digits, internationalPrefix) ? internationalPrefix : "00";
+            return "+" + digits.substring(prefix.length());
+        }
+        if (allowShortCode && digits.length() <= MAX_SHORT_CODE_LENGTH || callingCode.isEmpty()) {
+            return digits.toString();
+        }
+        if (!trunkPrefix.isEmpty() && startsWith(digits, trunkPrefix)) {
+            digits.delete(0, trunkPrefix.length());
+        }
+        return "+" + callingCode + digits;
+    }
+
+    private static boolean startsWith(CharSequence digits, String prefix) {
+        if (prefix.isEmpty() || digits.length() <= prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (digits.charAt(i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String detectCountryIso(Context context) {
+        TelephonyManager telephonyManager = (TelephonyManager) context.getSystemService(Context.TELEPHONY_SERVICE);
+        if (telephonyManager != null) {
+            String iso = telephonyManager.getSimCountryIso();
+            if (iso == null || iso.isEmpty()) {
+                iso = telephonyManager.getNetworkCountryIso();
+            }
+            if (iso != null && !iso.isEmpty()) {
+                return iso;
+            }
+        }
+        return Locale.getDefault().getCountry();
+    }
+}
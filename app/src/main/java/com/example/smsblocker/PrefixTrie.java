@@ -0,0 +1,208 @@
+package com.example.smsblocker;
+
+import java.util.Arrays;
+
+// Immutable, path-compressed radix trie over normalized numbers ('+' and digits) used for
+// prefix rules such as "+1800*". The nodes are flattened into parallel arrays so a lookup
+// only walks the characters of the number being checked, independent of the number of rules.
+public final class PrefixTrie {
+
+    private static final long NOT_TERMINAL = -1;
+    public static final long NOT_BLOCKED = -1;
+
+    private final char[] labels;       // concatenated edge labels of all nodes
+    private final int[] labelStart;    // offset of each node's label in labels
+    private final int[] labelLength;
+    private final int[] firstChild;    // children of a node are stored contiguously
+    private final byte[] childCount;
+    private final long[] unblockTimes; // NOT_TERMINAL, 0 (permanent) or the rule's unblock time
+
+    private PrefixTrie(Builder builder) {
+        labels = Arrays.copyOf(builder.labels, builder.labelSize);
+        labelStart = Arrays.copyOf(builder.labelStart, builder.nodeCount);
+        labelLength = Arrays.copyOf(builder.labelLength, builder.nodeCount);
+        firstChild = Arrays.copyOf(builder.firstChild, builder.nodeCount);
+        childCount = Arrays.copyOf(builder.childCount, builder.nodeCount);
+        unblockTimes = Arrays.copyOf(builder.unblockTimes, builder.nodeCount);
+    }
+
+    // prefixes and their unblock times (0 = permanent); prefixes must not include the trailing '*'
+    public static PrefixTrie build(String[] prefixes, long[] prefixUnblockTimes) {
+        int n = prefixes.length;
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> prefixes[a].compareTo(prefixes[b]));
+
+        // Drop duplicates, keeping the longest-lived entry
+        String[] keys = new String[n];
+        long[] values = new long[n];
+        int size = 0;
+        for (int i = 0; i < n; i++) {
+            String key = prefixes[order[i]];
+            long value = prefixUnblockTimes[order[i]];
+            if (size > 0 && keys[size - 1].equals(key)) {
+                values[size - 1] = laterOf(values[size - 1], value);
+            } else {
+                keys[size] = key;
+                values[size] = value;
+                size++;
+            }
+        }
+
+        Builder builder = new Builder(Math.max(1, size * 2));
+        int root = builder.reserve(1);
+        if (size == 0) {
+            builder.labelStart[root] = 0;
+            builder.labelLength[root] = 0;
+            builder.unblockTimes[root] = NOT_TERMINAL;
+        } else {
+            builder.fill(root, keys, values, 0, size, 0);
+        }
+        return new PrefixTrie(builder);
+    }
+
+    public int nodeCount() {
+        return labelStart.length;
+    }
+
+    // True if any prefix of the number is a rule that is still active at the given time
+    public boolean matches(CharSequence number, long now) {
+        return blockedUntil(number, now) != NOT_BLOCKED;
+    }
+
+    // When the last active rule matching the number ends: 0 if one of them never does, or
+    // NOT_BLOCKED if no active rule matches
+    public long blockedUntil(CharSequence number, long now) {
+        if (number == null) {
+            return NOT_BLOCKED;
+        }
+        long blockedUntil = NOT_BLOCKED;
+        int length = number.length();
+        int pos = 0;
+        int node = 0;
+        while (true) {
+            int start = labelStart[node];
+            int end = start + labelLength[node];
+            for (int i = start; i < end; i++, pos++) {
+                if (pos >= length || number.charAt(pos) != labels[i]) {
+                    return blockedUntil;
+                }
+            }
+
+            long unblockTime = unblockTimes[node];
+            if (unblockTime == 0) {
+                return 0;
+            }
+            if (unblockTime > now) {
+                // A longer rule further down may still outlast this one
+                blockedUntil = Math.max(blockedUntil, unblockTime);
+            }
+            if (pos == length) {
+                return blockedUntil;
+            }
+
+            char next = number.charAt(pos);
+            int child = firstChild[node];
+            int lastChild = child + childCount[node];
+            while (child < lastChild && labels[labelStart[child]] != next) {
+                child++;
+            }
+            if (child == lastChild) {
+                return blockedUntil;
+            }
+            node = child;
+        }
+    }
+
+    private static long laterOf(long a, long b) {
+        if (a == 0 || b == 0) {
+            return 0;
+        }
+        return Math.max(a, b);
+    }
+
+    // Growable arrays used while flattening the sorted keys into nodes
+    private static final class Builder {
+        char[] labels;
+        int labelSize;
+        int[] labelStart;
+        int[] labelLength;
+        int[] firstChild;
+        byte[] childCount;
+        long[] unblockTimes;
+        int nodeCount;
+
+        Builder(int capacity) {
+            labels = new char[capacity * 4];
+            labelStart = new int[capacity];
+            labelLength = new int[capacity];
+            firstChild = new int[capacity];
+            childCount = new byte[capacity];
+            unblockTimes = new long[capacity];
+        }
+
+        // Reserves count contiguous node slots and returns the first one
+        int reserve(int count) {
+            int first = nodeCount;
+            nodeCount += count;
+            if (nodeCount > labelStart.length) {
+                int capacity = Math.max(nodeCount, labelStart.length * 2);
+                labelStart = Arrays.copyOf(labelStart, capacity);
+                labelLength = Arrays.copyOf(labelLength, capacity);
+                firstChild = Arrays.copyOf(firstChild, capacity);
+                childCount = Arrays.copyOf(childCount, capacity);
+                unblockTimes = Arrays.copyOf(unblockTimes, capacity);
+            }
+            return first;
+        }
+
+        // Fills node with the sorted keys[lo, hi), all of which share the first depth characters
+        void fill(int node, String[] keys, long[] values, int lo, int hi, int depth) {
+            String first = keys[lo];
+            String last = keys[hi - 1];
+            int end = depth;
+            while (end < first.length() && end < last.length() && first.charAt(end) == last.charAt(end)) {
+                end++;
+            }
+
+            appendLabel(node, first, depth, end);
+            unblockTimes[node] = NOT_TERMINAL;
+            if (first.length() == end) {
+                unblockTimes[node] = values[lo];
+                lo++;
+            }
+
+            // Group the remaining (longer) keys by their next character
+            int groups = 0;
+            for (int i = lo; i < hi; i++) {
+                if (i == lo || keys[i].charAt(end) != keys[i - 1].charAt(end)) {
+                    groups++;
+                }
+            }
+            int child = reserve(groups);
+            firstChild[node] = child;
+            childCount[node] = (byte) groups;
+
+            int groupStart = lo;
+            for (int i = lo + 1; i <= hi; i++) {
+                if (i == hi || keys[i].charAt(end) != keys[groupStart].charAt(end)) {
+                    fill(child++, keys, values, groupStart, i, end);
+                    groupStart = i;
+                }
+            }
+        }
+
+        private void appendLabel(int node, String key, int from, int to) {
+            int length = to - from;
+            if (labelSize + length > labels.length) {
+                labels = Arrays.copyOf(labels, Math.max(labelSize + length, labels.length * 2));
+            }
+            key.getChars(from, to, labels, labelSize);
+            labelStart[node] = labelSize;
+            labelLength[node] = length;
+            labelSize += length;
+        }
+    }
+}
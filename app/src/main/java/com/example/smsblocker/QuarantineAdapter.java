@@ -0,0 +1,66 @@
+package com.example.smsblocker;
+
+import android.content.Context;
+import android.text.format.DateFormat;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Rows of the blocked messages view: sender, message and when it was blocked and why
+public class QuarantineAdapter extends RecyclerView.Adapter<QuarantineAdapter.ViewHolder> {
+    private final Context context;
+    private final List<QuarantineLog.Message> messages = new ArrayList<>();
+
+    public QuarantineAdapter(Context context) {
+        this.context = context;
+    }
+
+    // Pages arrive newest first, each older than the last
+    public void appendPage(List<QuarantineLog.Message> page) {
+        int start = messages.size();
+        messages.addAll(page);
+        notifyItemRangeInserted(start, page.size());
+    }
+
+    // Sequence of the oldest message shown, where the next page starts
+    public long oldestSequence() {
+        return messages.isEmpty() ? Long.MAX_VALUE : messages.get(messages.size() - 1).sequence;
+    }
+
+    @Override
+    public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(context).inflate(R.layout.item_blocked_sms, parent, false);
+        return new ViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(ViewHolder holder, int position) {
+        QuarantineLog.Message message = messages.get(position);
+        holder.senderName.setText(message.sender);
+        holder.messageBody.setText(message.body);
+        String time = DateFormat.format("dd-MM-yyyy hh:mm a", message.receivedAt).toString();
+        holder.blockedAt.setText(message.rule != null ? time + " · " + message.rule : time);
+    }
+
+    @Override
+    public int getItemCount() {
+        return messages.size();
+    }
+
+    public static class ViewHolder extends RecyclerView.ViewHolder {
+        TextView senderName, messageBody, blockedAt;
+
+        public ViewHolder(View itemView) {
+            super(itemView);
+            senderName = itemView.findViewById(R.id.sender_name);
+            messageBody = itemView.findViewById(R.id.last_message);
+            blockedAt = itemView.findViewById(R.id.timestamp);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.smsblocker;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Toast;
+
+import androidx.annotation.NonNull;
+import androidx.fragment.app.Fragment;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.List;
+
+// Messages SmsReceiver blocked, newest first, read from the quarantine log a page at a time as
+// the list is scrolled
+public class QuarantineFragment extends Fragment {
+
+    private static final int PAGE_SIZE = 50;
+    // Start loading the next page this many rows before the end of the list
+    private static final int PREFETCH_DISTANCE = 10;
+
+    private QuarantineAdapter quarantineAdapter;
+    private LinearLayoutManager layoutManager;
+    // The page load in progress, null when none is
+    private ScreenLoader.Handle pageLoad;
+    private boolean exhausted;
+
+    @Override
+    public View onCreateView(@NonNull LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
+        View view = inflater.inflate(R.layout.fragment_quarantine, container, false);
+
+        RecyclerView recyclerView = view.findViewById(R.id.recyclerViewQuarantine);
+        layoutManager = new LinearLayoutManager(getContext());
+        recyclerView.setLayoutManager(layoutManager);
+        quarantineAdapter = new QuarantineAdapter(getContext());
+        recyclerView.setAdapter(quarantineAdapter);
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (layoutManager.findLastVisibleItemPosition() >= quarantineAdapter.getItemCount() - PREFETCH_DISTANCE) {
+                    loadNextPage();
+                }
+            }
+        });
+
+        return view;
+    }
+
+    @Override
+    public void onViewCreated(@NonNull View view, Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+        pageLoad = null;
+        exhausted = false;
+        loadNextPage();
+    }
+
+    private void loadNextPage() {
+        if (pageLoad != null || exhausted) {
+            return;
+        }
+        final Context context = requireContext().getApplicationContext();
+        final long beforeSequence = quarantineAdapter.oldestSequence();
+        pageLoad = ScreenLoader.shared().load(getViewLifecycleOwner(), "quarantine/" + beforeSequence,
+                () -> QuarantineLog.get(context).readPage(beforeSequence, PAGE_SIZE),
+                new ScreenLoader.Callback<List<QuarantineLog.Message>>() {
+                    @Override
+                    public void onLoaded(List<QuarantineLog.Message> page) {
+                        pageLoad = null;
+                        exhausted = page.size() < PAGE_SIZE;
+                        if (page.isEmpty() && quarantineAdapter.getItemCount() == 0) {
+                            Toast.makeText(getContext(), "No blocked messages", Toast.LENGTH_SHORT).show();
+                        }
+                        quarantineAdapter.appendPage(page);
+                    }
+
+                    @Override
+                    public void onFailed(Exception e) {
+                        pageLoad = null;
+                        Toast.makeText(getContext(), "Failed to load blocked messages", Toast.LENGTH_SHORT).show();
+                    }
+                });
+    }
+}
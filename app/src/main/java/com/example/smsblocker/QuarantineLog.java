@@ -0,0 +1,415 @@
+package com.example.smsblocker;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+// Messages SmsReceiver blocked, kept so false positives can be reviewed. The receiver only puts a
+// message on a bounded queue, which never blocks; a single writer thread appends whatever has
+// queued up in one write and one fsync (group commit), so a flood costs one sync per batch
+// instead of one per message. Old messages are dropped by copying the surviving tail of the log
+// to a new file once enough of it can go.
+//
+// Record layout (big-endian): payload length (int), CRC32 of the payload (int), then the payload:
+// sequence (long), received at (long), sender, body and rule, each as a byte length (int, -1 for
+// null) followed by UTF-8 bytes. A torn record at the end (the process died mid-write) is cut off
+// when the log is opened.
+public final class QuarantineLog {
+
+    private static final String TAG = "QuarantineLog";
+    private static final String LOG_FILE = "quarantine.log";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int MIN_PAYLOAD_SIZE = 28;  // two longs and three string lengths
+    static final int QUEUE_CAPACITY = 1_024;
+    static final int MAX_BATCH = 256;
+    static final int MAX_MESSAGES = 5_000;
+    static final long RETENTION_MILLIS = TimeUnit.DAYS.toMillis(30);
+
+    private static final Object instanceLock = new Object();
+    private static volatile QuarantineLog shared;
+
+    private final File logFile;
+    private final File compactedFile;  // the new log while a compaction writes it
+    private final int maxMessages;
+    private final long retentionMillis;
+    private final BlockingQueue<Message> queue;
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Object commitLock = new Object();
+    private long committed;  // guarded by commitLock
+
+    // Guarded by this: the open log and an index of its records, oldest first
+    private FileChannel channel;
+    private long length;
+    private long[] sequences = new long[64];
+    private long[] offsets = new long[64];
+    private long[] receivedTimes = new long[64];
+    private int count;
+    private long nextSequence = 1;
+
+    public static final class Message {
+        public final long sequence;  // increases with every message written, 0 until then
+        public final long receivedAt;
+        public final String sender;
+        public final String body;
+        public final String rule;    // what blocked the message, null if not known
+
+        Message(long sequence, long receivedAt, String sender, String body, String rule) {
+            this.sequence = sequence;
+            this.receivedAt = receivedAt;
+            this.sender = sender;
+            this.body = body;
+            this.rule = rule;
+        }
+    }
+
+    QuarantineLog(File file, int queueCapacity, int maxMessages, long retentionMillis) {
+        this.logFile = file;
+        this.compactedFile = new File(file.getPath() + ".new");
+        this.maxMessages = maxMessages;
+        this.retentionMillis = retentionMillis;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        try {
+            open();
+        } catch (IOException e) {
+            // Losing the quarantine must never stop blocking, so start over with an empty log
+            Log.e(TAG, "Could not open " + file + ", starting a new log", e);
+            file.delete();
+            try {
+                open();
+            } catch (IOException retry) {
+                throw new IllegalStateException("Could not create " + file, retry);
+            }
+        }
+        Thread writer = new Thread(this::runWriter, "quarantine-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public static QuarantineLog get(Context context) {
+        QuarantineLog log = shared;
+        if (log != null) {
+            return log;
+        }
+        synchronized (instanceLock) {
+            if (shared == null) {
+                shared = new QuarantineLog(new File(context.getApplicationContext().getFilesDir(), LOG_FILE),
+                        QUEUE_CAPACITY, MAX_MESSAGES, RETENTION_MILLIS);
+            }
+            return shared;
+        }
+    }
+
+    // Queues the message for the writer and returns at once. If the queue is full the message is
+    // not kept (and counted) rather than making the receiver wait for the disk.
+    public boolean append(String sender, String body, String rule, long receivedAt) {
+        if (!queue.offer(new Message(0, receivedAt, sender, body, rule))) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        enqueued.incrementAndGet();
+        return true;
+    }
+
+    // Up to limit messages written before the given sequence, newest first. Start with
+    // Long.MAX_VALUE and pass the sequence of the last message of a page to get the next one.
+    public synchronized List<Message> readPage(long beforeSequence, int limit) throws IOException {
+        int end = lowerBound(beforeSequence);  // records [0, end) are older than beforeSequence
+        List<Message> page = new ArrayList<>(Math.min(limit, end));
+        for (int i = end - 1; i >= 0 && page.size() < limit; i--) {
+            Message message = readRecord(channel, offsets[i], Integer.MAX_VALUE);
+            if (message != null) {
+                page.add(message);
+            }
+        }
+        return page;
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    // Messages that arrived while the queue was full
+    public long droppedCount() {
+        return dropped.get();
+    }
+
+    // Waits until every message appended so far has been written
+    void flush() throws InterruptedException {
+        long target = enqueued.get();
+        synchronized (commitLock) {
+            while (committed < target) {
+                commitLock.wait();
+            }
+        }
+    }
+
+    // Like flush(), but gives up after timeoutMillis; returns whether everything was written
+    public boolean flush(long timeoutMillis) throws InterruptedException {
+        long target = enqueued.get();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        synchronized (commitLock) {
+            while (committed < target) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(commitLock, remaining);
+            }
+        }
+        return true;
+    }
+
+    private void runWriter() {
+        List<Message> batch = new ArrayList<>(MAX_BATCH);
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, MAX_BATCH - 1);
+            try {
+                commit(batch);
+                compactIfNeeded(System.currentTimeMillis());
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to write " + batch.size() + " quarantined messages", e);
+            }
+            synchronized (commitLock) {
+                committed += batch.size();
+                commitLock.notifyAll();
+            }
+            batch.clear();
+        }
+    }
+
+    // Only the writer thread appends, so the file is written and synced outside the lock and
+    // readers only wait for the index update
+    private void commit(List<Message> batch) throws IOException {
+        FileChannel target;
+        long position;
+        long firstSequence;
+        synchronized (this) {
+            target = channel;
+            position = length;
+            firstSequence = nextSequence;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(batch.size() * 256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        long[] recordOffsets = new long[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            recordOffsets[i] = position + out.size();
+            writeRecord(out, firstSequence + i, batch.get(i));
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        while (buffer.hasRemaining()) {
+            target.write(buffer, position + buffer.position());
+        }
+        target.force(false);
+
+        synchronized (this) {
+            for (int i = 0; i < batch.size(); i++) {
+                addToIndex(firstSequence + i, recordOffsets[i], batch.get(i).receivedAt);
+            }
+            length += buffer.limit();
+            nextSequence += batch.size();
+        }
+    }
+
+    // Drops messages past the retention period or beyond maxMessages. Copying the tail costs as
+    // much as the log, so it waits until at least a quarter of the records can go; the log then
+    // never grows past 4/3 of maxMessages.
+    synchronized void compactIfNeeded(long now) throws IOException {
+        int first = Math.max(0, count - maxMessages);
+        long cutoff = now - retentionMillis;
+        while (first < count && receivedTimes[first] < cutoff) {
+            first++;
+        }
+        if (first == 0 || first * 4L < count) {
+            return;
+        }
+
+        // The new log is complete and synced before it replaces the old one, so a crash leaves
+        // either of them intact
+        long from = first < count ? offsets[first] : length;
+        try (FileOutputStream out = new FileOutputStream(compactedFile)) {
+            long position = from;
+            while (position < length) {
+                long copied = channel.transferTo(position, length - position, out.getChannel());
+                if (copied <= 0) {
+                    throw new IOException("Quarantine log ended before " + length + " bytes");
+                }
+                position += copied;
+            }
+            out.getFD().sync();
+        }
+        if (!compactedFile.renameTo(logFile)) {
+            compactedFile.delete();
+            throw new IOException("Could not replace " + logFile);
+        }
+        channel.close();
+        channel = new RandomAccessFile(logFile, "rw").getChannel();
+
+        int kept = count - first;
+        System.arraycopy(sequences, first, sequences, 0, kept);
+        System.arraycopy(offsets, first, offsets, 0, kept);
+        System.arraycopy(receivedTimes, first, receivedTimes, 0, kept);
+        for (int i = 0; i < kept; i++) {
+            offsets[i] -= from;
+        }
+        count = kept;
+        length -= from;
+        Log.d(TAG, "Compacted the quarantine log, dropped " + first + " messages, kept " + kept);
+    }
+
+    // Reads every record once to rebuild the index, and cuts off a torn or corrupt tail
+    private synchronized void open() throws IOException {
+        compactedFile.delete();  // left behind by a compaction that did not finish
+        channel = new RandomAccessFile(logFile, "rw").getChannel();
+        long size = channel.size();
+        long position = 0;
+        count = 0;
+        while (position < size) {
+            Message message = readRecord(channel, position, size);
+            if (message == null) {
+                Log.w(TAG, "Discarding " + (size - position) + " bytes of torn or corrupt records");
+                channel.truncate(position);
+                break;
+            }
+            addToIndex(message.sequence, position, message.receivedAt);
+            nextSequence = message.sequence + 1;
+            position += RECORD_HEADER_SIZE + payloadLength(channel, position);
+        }
+        length = position;
+    }
+
+    private static int payloadLength(FileChannel source, long offset) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(4);
+        readFully(source, length, offset);
+        return length.getInt(0);
+    }
+
+    // Returns null if the record is cut off before limit or fails its checksum
+    private static Message readRecord(FileChannel source, long offset, long limit) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        if (offset + RECORD_HEADER_SIZE > limit || !readFully(source, header, offset)) {
+            return null;
+        }
+        int payloadLength = header.getInt(0);
+        int checksum = header.getInt(4);
+        long end = offset + RECORD_HEADER_SIZE + payloadLength;
+        if (payloadLength < MIN_PAYLOAD_SIZE || end > limit) {
+            return null;
+        }
+        ByteBuffer payload = ByteBuffer.allocate(payloadLength);
+        if (!readFully(source, payload, offset + RECORD_HEADER_SIZE)) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload.array(), 0, payloadLength);
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+        payload.rewind();
+        try {
+            long sequence = payload.getLong();
+            long receivedAt = payload.getLong();
+            return new Message(sequence, receivedAt, readString(payload), readString(payload), readString(payload));
+        } catch (RuntimeException e) {
+            return null;  // lengths inside the payload do not add up
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, long sequence, Message message) throws IOException {
+        ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream(64 + message.body.length());
+        DataOutputStream payload = new DataOutputStream(payloadBytes);
+        payload.writeLong(sequence);
+        payload.writeLong(message.receivedAt);
+        writeString(payload, message.sender);
+        writeString(payload, message.body);
+        writeString(payload, message.rule);
+
+        CRC32 crc = new CRC32();
+        crc.update(payloadBytes.toByteArray(), 0, payloadBytes.size());
+        out.writeInt(payloadBytes.size());
+        out.writeInt((int) crc.getValue());
+        payloadBytes.writeTo(out);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int byteLength = buffer.getInt();
+        if (byteLength < 0) {
+            return null;
+        }
+        String value = new String(buffer.array(), buffer.position(), byteLength, UTF_8);
+        buffer.position(buffer.position() + byteLength);
+        return value;
+    }
+
+    private static boolean readFully(FileChannel source, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = source.read(buffer, position + buffer.position());
+            if (read < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void addToIndex(long sequence, long offset, long receivedAt) {
+        if (count == sequences.length) {
+            int capacity = count * 2;
+            sequences = Arrays.copyOf(sequences, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            receivedTimes = Arrays.copyOf(receivedTimes, capacity);
+        }
+        sequences[count] = sequence;
+        offsets[count] = offset;
+        receivedTimes[count] = receivedAt;
+        count++;
+    }
+
+    // Index of the first record whose sequence is not below the given one
+    private int lowerBound(long sequence) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sequences[mid] < sequence) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.smsblocker;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+@Entity(tableName = RegexRule.TABLE)
+public class RegexRule {
+
+    public static final String TABLE = "regex_rules";
+    public static final String TARGET_SENDER = "sender";
+    public static final String TARGET_BODY = "body";
+
+    @PrimaryKey(autoGenerate = true)
+    @ColumnInfo(name = "_id")
+    private final long id;
+
+    @NonNull
+    @ColumnInfo(name = "pattern")
+    private final String pattern;
+
+    @NonNull
+    @ColumnInfo(name = "target")
+    private final String target;
+
+    @ColumnInfo(name = "priority", defaultValue = "0")
+    private final int priority;
+
+    public RegexRule(long id, @NonNull String pattern, @NonNull String target, int priority) {
+        this.id = id;
+        this.pattern = pattern;
+        this.target = target;
+        this.priority = priority;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    @NonNull
+    public String getPattern() {
+        return pattern;
+    }
+
+    @NonNull
+    public String getTarget() {
+        return target;
+    }
+
+    // Rules with a higher priority are evaluated first
+    public int getPriority() {
+        return priority;
+    }
+
+    // How the rule is shown in the rules dialog
+    public String getLabel() {
+        return (TARGET_SENDER.equals(target) ? "from /" : "/") + pattern + "/";
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.smsblocker;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.Query;
+
+import java.util.List;
+
+@Dao
+public interface RegexRuleDao {
+
+    @Insert
+    long insert(RegexRule rule);
+
+    @Query("DELETE FROM regex_rules WHERE _id = :ruleId")
+    int delete(long ruleId);
+
+    // Highest priority first, then in the order they were added
+    @Query("SELECT * FROM regex_rules ORDER BY priority DESC, _id ASC")
+    List<RegexRule> getAll();
+}
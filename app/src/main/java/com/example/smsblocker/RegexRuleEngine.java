@@ -0,0 +1,217 @@
+package com.example.smsblocker;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+// Evaluates the regex rules on sender and body. Each rule is compiled once into a shared cache,
+// and the rules of a target are also merged into one alternation so a message is normally
+// scanned by a single pattern instead of N separate ones. Rules are evaluated in priority order
+// and evaluation stops at the first match.
+public final class RegexRuleEngine {
+
+    private static final String TAG = "RegexRuleEngine";
+    private static final int FLAGS = Pattern.CASE_INSENSITIVE;
+
+    // Backreferences and named groups would clash once several patterns share one alternation
+    private static final Pattern UNMERGEABLE = Pattern.compile("\\\\[1-9]|\\\\k<|\\(\\?<[a-zA-Z]");
+
+    // Shared by every engine instance, so rebuilding after a rule change only compiles new patterns
+    private static final ConcurrentHashMap<String, Pattern> patternCache = new ConcurrentHashMap<>();
+
+    private static final ExecutorService compiler = Executors.newSingleThreadExecutor();
+    private static final Object loadLock = new Object();
+    private static volatile RegexRuleEngine current;
+
+    private final TargetRules senderRules;
+    private final TargetRules bodyRules;
+
+    private RegexRuleEngine(List<RegexRule> rules) {
+        List<RegexRule> sender = new ArrayList<>();
+        List<RegexRule> body = new ArrayList<>();
+        for (RegexRule rule : rules) {
+            if (compile(rule.getPattern()) == null) {
+                continue;
+            }
+            if (RegexRule.TARGET_SENDER.equals(rule.getTarget())) {
+                sender.add(rule);
+            } else {
+                body.add(rule);
+            }
+        }
+        senderRules = new TargetRules(sender);
+        bodyRules = new TargetRules(body);
+    }
+
+    public static RegexRuleEngine compile(List<RegexRule> rules) {
+        return new RegexRuleEngine(rules);
+    }
+
+    public static RegexRuleEngine get(Context context) {
+        RegexRuleEngine engine = current;
+        if (engine != null) {
+            return engine;
+        }
+        synchronized (loadLock) {
+            if (current == null) {
+                current = load(context);
+            }
+            return current;
+        }
+    }
+
+    // Recompiles the rules off the calling thread
+    public static void rebuildAsync(Context context) {
+        final Context appContext = context.getApplicationContext();
+        compiler.execute(() -> {
+            RegexRuleEngine engine = load(appContext);
+            synchronized (loadLock) {
+                current = engine;
+            }
+            // Sender decisions cached against the previous rules are stale now
+            BlockedNumbersDatabaseHelper.bumpDataVersion();
+        });
+    }
+
+    // Throws PatternSyntaxException so callers can reject a rule before it is stored
+    public static void validate(String pattern) {
+        Pattern.compile(pattern, FLAGS);
+    }
+
+    private static RegexRuleEngine load(Context context) {
+        BlockedNumbersDatabaseHelper dbHelper = BlockedNumbersDatabaseHelper.getInstance(context);
+        RegexRuleEngine engine = new RegexRuleEngine(dbHelper.getRegexRules());
+        Log.d(TAG, "Compiled " + engine.ruleCount() + " regex rules");
+        return engine;
+    }
+
+    public int ruleCount() {
+        return senderRules.rules.size() + bodyRules.rules.size();
+    }
+
+    // Returns the highest-priority rule matching the message, or null
+    public RegexRule match(String sender, String body) {
+        RegexRule rule = senderRules.match(sender);
+        return rule != null ? rule : bodyRules.match(body);
+    }
+
+    public RegexRule matchSender(String sender) {
+        return senderRules.match(sender);
+    }
+
+    public RegexRule matchBody(String body) {
+        return bodyRules.match(body);
+    }
+
+    private static Pattern compile(String pattern) {
+        Pattern compiled = patternCache.get(pattern);
+        if (compiled == null) {
+            try {
+                compiled = Pattern.compile(pattern, FLAGS);
+            } catch (PatternSyntaxException e) {
+                Log.e(TAG, "Skipping invalid pattern " + pattern + ": " + e.getDescription());
+                return null;
+            }
+            Pattern existing = patternCache.putIfAbsent(pattern, compiled);
+            if (existing != null) {
+                compiled = existing;
+            }
+        }
+        return compiled;
+    }
+
+    // The rules of one target (sender or body) in priority order
+    private static final class TargetRules {
+        private final List<RegexRule> rules;
+        private final boolean[] merged;
+        private final Pattern alternation;
+        private final int[] groupOfRule;  // capturing group that wraps each merged rule
+
+        TargetRules(List<RegexRule> targetRules) {
+            rules = new ArrayList<>(targetRules);
+            Collections.sort(rules, (a, b) -> a.getPriority() != b.getPriority()
+                    ? Integer.compare(b.getPriority(), a.getPriority())
+                    : Long.compare(a.getId(), b.getId()));
+
+            merged = new boolean[rules.size()];
+            groupOfRule = new int[rules.size()];
+            StringBuilder combined = new StringBuilder();
+            int group = 1;
+            int mergedCount = 0;
+            for (int i = 0; i < rules.size(); i++) {
+                String pattern = rules.get(i).getPattern();
+                if (UNMERGEABLE.matcher(pattern).find()) {
+                    continue;
+                }
+                if (combined.length() > 0) {
+                    combined.append('|');
+                }
+                combined.append('(').append(pattern).append(')');
+                merged[i] = true;
+                groupOfRule[i] = group;
+                group += 1 + compile(pattern).matcher("").groupCount();
+                mergedCount++;
+            }
+
+            // A single rule gains nothing from merging, it is matched on its own
+            Pattern alternationPattern = null;
+            if (mergedCount > 1) {
+                try {
+                    alternationPattern = Pattern.compile(combined.toString(), FLAGS);
+                } catch (PatternSyntaxException e) {
+                    Log.w(TAG, "Rules could not be merged, matching them one by one");
+                }
+            }
+            if (alternationPattern == null) {
+                for (int i = 0; i < merged.length; i++) {
+                    merged[i] = false;
+                }
+            }
+            alternation = alternationPattern;
+        }
+
+        RegexRule match(String text) {
+            if (text == null || rules.isEmpty()) {
+                return null;
+            }
+
+            // One scan with the merged alternation tells whether any merged rule matches at all
+            RegexRule mergedMatch = null;
+            if (alternation != null) {
+                Matcher matcher = alternation.matcher(text);
+                if (matcher.find()) {
+                    for (int i = 0; i < rules.size(); i++) {
+                        if (merged[i] && matcher.start(groupOfRule[i]) >= 0) {
+                            mergedMatch = rules.get(i);
+                            break;
+                        }
+                    }
+                }
+            }
+
+            // Only rules ranked above the merged hit (or rules that could not be merged) need their own scan
+            for (int i = 0; i < rules.size(); i++) {
+                RegexRule rule = rules.get(i);
+                if (rule == mergedMatch) {
+                    return rule;
+                }
+                if (merged[i] && mergedMatch == null) {
+                    continue;
+                }
+                if (compile(rule.getPattern()).matcher(text).find()) {
+                    return rule;
+                }
+            }
+            return null;
+        }
+    }
+}
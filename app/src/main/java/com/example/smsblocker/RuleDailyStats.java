@@ -0,0 +1,43 @@
+package com.example.smsblocker;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+
+// Messages one rule blocked on one local day, rolled up by BlockStats
+@Entity(tableName = RuleDailyStats.TABLE, primaryKeys = {"day", "rule"})
+public class RuleDailyStats {
+
+    public static final String TABLE = "rule_daily_stats";
+
+    // Local days since the epoch, see BlockStats.dayOf
+    @ColumnInfo(name = "day")
+    private final long day;
+
+    // "blocklist", the keyword or the regex rule's label
+    @NonNull
+    @ColumnInfo(name = "rule")
+    private final String rule;
+
+    @ColumnInfo(name = "hits", defaultValue = "0")
+    private final long hits;
+
+    public RuleDailyStats(long day, @NonNull String rule, long hits) {
+        this.day = day;
+        this.rule = rule;
+        this.hits = hits;
+    }
+
+    public long getDay() {
+        return day;
+    }
+
+    @NonNull
+    public String getRule() {
+        return rule;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.smsblocker;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs the screens' provider and file reads on one small shared pool and hands the results
+// back on the main thread. Every load is tied to a lifecycle: once it is destroyed the callback
+// is dropped, and a load nobody waits for any more is taken off the queue before it starts.
+// Loads are identified by a key; asking for a key that is already queued or running joins that
+// load instead of starting a second one. A running load whose screen went away is left to
+// finish for that reason, so switching tabs back and forth never stacks up identical scans.
+public final class ScreenLoader {
+
+    private static final String TAG = "ScreenLoader";
+
+    static final int THREADS = 2;
+    static final int QUEUE_CAPACITY = 32;
+
+    private static volatile ScreenLoader shared;
+
+    private final ThreadPoolExecutor executor;
+    private final Executor mainThread;
+    private final Object lock = new Object();
+    // key -> the load currently queued or running for it
+    private final Map<String, Flight<?>> inFlight = new HashMap<>();
+
+    public interface Callback<T> {
+        void onLoaded(T result);
+
+        void onFailed(Exception e);
+    }
+
+    // One caller's interest in a load
+    public interface Handle {
+        // Drops the callback; the load itself stops too if it has not started and nobody else waits for it
+        void cancel();
+
+        boolean isActive();
+    }
+
+    ScreenLoader(int threads, int queueCapacity, Executor mainThread) {
+        final AtomicInteger count = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "screen-loader-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        this.mainThread = mainThread;
+    }
+
+    public static ScreenLoader shared() {
+        ScreenLoader loader = shared;
+        if (loader == null) {
+            synchronized (ScreenLoader.class) {
+                if (shared == null) {
+                    Handler handler = new Handler(Looper.getMainLooper());
+                    shared = new ScreenLoader(THREADS, QUEUE_CAPACITY, handler::post);
+                }
+                loader = shared;
+            }
+        }
+        return loader;
+    }
+
+    // Loads in the background and calls back on the main thread while owner is not destroyed.
+    // Pass a fragment's view lifecycle owner so the load ends with the view.
+    public <T> Handle load(LifecycleOwner owner, String key, Callable<T> task, Callback<T> callback) {
+        final Lifecycle lifecycle = owner.getLifecycle();
+        if (lifecycle.getCurrentState() == Lifecycle.State.DESTROYED) {
+            return CANCELLED;
+        }
+        final Subscription<T> subscription = subscribe(key, task, callback);
+        final LifecycleEventObserver observer = new LifecycleEventObserver() {
+            @Override
+            public void onStateChanged(@NonNull LifecycleOwner source, @NonNull Lifecycle.Event event) {
+                if (event == Lifecycle.Event.ON_DESTROY) {
+                    lifecycle.removeObserver(this);
+                    subscription.cancel();
+                }
+            }
+        };
+        lifecycle.addObserver(observer);
+        // Delivered or cancelled, the observer has nothing left to do
+        subscription.onDone = () -> lifecycle.removeObserver(observer);
+        return subscription;
+    }
+
+    // Without a lifecycle the caller has to cancel the handle itself
+    <T> Handle load(String key, Callable<T> task, Callback<T> callback) {
+        return subscribe(key, task, callback);
+    }
+
+    private <T> Subscription<T> subscribe(String key, Callable<T> task, Callback<T> callback) {
+        Subscription<T> subscription;
+        Flight<T> started = null;
+        synchronized (lock) {
+            @SuppressWarnings("unchecked")
+            Flight<T> flight = (Flight<T>) inFlight.get(key);
+            if (flight == null) {
+                flight = new Flight<>(key, task);
+                inFlight.put(key, flight);
+                started = flight;
+            }
+            subscription = new Subscription<>(flight, callback);
+            flight.subscribers.add(subscription);
+        }
+        if (started != null) {
+            try {
+                started.future = executor.submit(started);
+            } catch (RejectedExecutionException e) {
+                started.finish(null, e);
+            }
+        }
+        return subscription;
+    }
+
+    // Loads queued or running, for tests
+    int inFlightCount() {
+        synchronized (lock) {
+            return inFlight.size();
+        }
+    }
+
+    private final class Flight<T> implements Runnable {
+        final String key;
+        final Callable<T> task;
+        final List<Subscription<T>> subscribers = new ArrayList<>();
+        volatile Future<?> future;
+        boolean running;
+
+        Flight(String key, Callable<T> task) {
+            this.key = key;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            synchronized (lock) {
+                if (inFlight.get(key) != this) {
+                    return;  // every subscriber left while it was queued
+                }
+                running = true;
+            }
+            T result = null;
+            Exception failure = null;
+            try {
+                result = task.call();
+            } catch (Exception e) {
+                Log.e(TAG, "Load " + key + " failed", e);
+                failure = e;
+            }
+            finish(result, failure);
+        }
+
+        void finish(final T result, final Exception failure) {
+            final List<Subscription<T>> waiting;
+            synchronized (lock) {
+                if (inFlight.get(key) == this) {
+                    inFlight.remove(key);
+                }
+                waiting = new ArrayList<>(subscribers);
+                subscribers.clear();
+            }
+            for (final Subscription<T> subscription : waiting) {
+                mainThread.execute(() -> subscription.deliver(result, failure));
+            }
+        }
+
+        // Called under the lock when a subscriber leaves
+        void unsubscribed(Subscription<T> subscription) {
+            subscribers.remove(subscription);
+            if (subscribers.isEmpty() && !running && inFlight.get(key) == this) {
+                inFlight.remove(key);
+                Future<?> queued = future;
+                if (queued != null) {
+                    queued.cancel(false);
+                    executor.purge();
+                }
+            }
+        }
+    }
+
+    private final class Subscription<T> implements Handle {
+        final Flight<T> flight;
+        final Callback<T> callback;
+        volatile boolean cancelled;
+        volatile boolean delivered;
+        volatile Runnable onDone;
+
+        Subscription(Flight<T> flight, Callback<T> callback) {
+            this.flight = flight;
+            this.callback = callback;
+        }
+
+        @Override
+        public void cancel() {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            synchronized (lock) {
+                flight.unsubscribed(this);
+            }
+            done();
+        }
+
+        @Override
+        public boolean isActive() {
+            return !cancelled && !delivered;
+        }
+
+        void deliver(T result, Exception failure) {
+            if (cancelled) {
+                return;
+            }
+            delivered = true;
+            done();
+            if (failure != null) {
+                callback.onFailed(failure);
+            } else {
+                callback.onLoaded(result);
+            }
+        }
+
+        private void done() {
+            Runnable hook = onDone;
+            if (hook != null) {
+                hook.run();
+            }
+        }
+    }
+
+    private static final Handle CANCELLED = new Handle() {
+        @Override
+        public void cancel() {
+        }
+
+        @Override
+        public boolean isActive() {
+            return false;
+        }
+    };
+}
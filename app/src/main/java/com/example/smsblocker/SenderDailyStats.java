@@ -0,0 +1,43 @@
+package com.example.smsblocker;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+
+// Messages blocked from one sender on one local day, rolled up by BlockStats
+@Entity(tableName = SenderDailyStats.TABLE, primaryKeys = {"day", "sender"})
+public class SenderDailyStats {
+
+    public static final String TABLE = "sender_daily_stats";
+
+    // Local days since the epoch, see BlockStats.dayOf
+    @ColumnInfo(name = "day")
+    private final long day;
+
+    // Normalized sender number
+    @NonNull
+    @ColumnInfo(name = "sender")
+    private final String sender;
+
+    @ColumnInfo(name = "blocked", defaultValue = "0")
+    private final long blocked;
+
+    public SenderDailyStats(long day, @NonNull String sender, long blocked) {
+        this.day = day;
+        this.sender = sender;
+        this.blocked = blocked;
+    }
+
+    public long getDay() {
+        return day;
+    }
+
+    @NonNull
+    public String getSender() {
+        return sender;
+    }
+
+    public long getBlocked() {
+        return blocked;
+    }
+}
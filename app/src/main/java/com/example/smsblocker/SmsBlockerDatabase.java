@@ -0,0 +1,35 @@
+package com.example.smsblocker;
+
+import android.content.Context;
+
+import androidx.room.Database;
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+
+// The Room database behind BlockedNumbersDatabaseHelper. Versions up to 7 were managed by a
+// hand-written SQLiteOpenHelper; Migrations carries its upgrade steps over unchanged.
+@Database(entities = {BlockedNumber.class, KeywordRule.class, RegexRule.class, SenderDailyStats.class,
+        RuleDailyStats.class, BlocklistVersion.class}, version = 10)
+public abstract class SmsBlockerDatabase extends RoomDatabase {
+
+    static final String DATABASE_NAME = "sms_blocker.db";
+
+    public abstract BlockedNumberDao blockedNumbers();
+
+    public abstract KeywordRuleDao keywordRules();
+
+    public abstract RegexRuleDao regexRules();
+
+    public abstract BlockStatsDao blockStats();
+
+    static SmsBlockerDatabase create(Context context, PhoneNumberNormalizer normalizer) {
+        return Room.databaseBuilder(context, SmsBlockerDatabase.class, DATABASE_NAME)
+                .addMigrations(Migrations.all(normalizer))
+                // WAL lets readers (the receiver, the UI) run while the writer commits
+                .setJournalMode(JournalMode.WRITE_AHEAD_LOGGING)
+                // The receiver and the adapters have always read synchronously; writes stay on
+                // BlockedNumbersDatabaseHelper's writer thread
+                .allowMainThreadQueries()
+                .build();
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.smsblocker;
+
+import android.util.Log;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Runs SmsReceiver's block decisions off the main thread. Work is spread over a few
+// single-threaded lanes with bounded queues; a sender always maps to the same lane, so its
+// messages are decided in arrival order. Every dispatch has a latency budget: if the full
+// decision is not ready in time (or the lane is full) the cheap fallback decision is used
+// instead, and whichever answer comes first is the only one delivered. The fallback and its
+// completion then run on the watchdog thread, never on the caller's (the main) thread.
+public final class SmsDispatcher {
+
+    private static final String TAG = "SmsDispatcher";
+
+    static final int LANE_COUNT = 4;
+    static final int LANE_CAPACITY = 64;
+    // Well inside the ten seconds an ordered broadcast may take before the system gives up on it
+    static final long LATENCY_BUDGET_MILLIS = 4_000;
+
+    private static final SmsDispatcher shared = new SmsDispatcher(LANE_COUNT, LANE_CAPACITY, LATENCY_BUDGET_MILLIS);
+
+    public interface Completion {
+        void complete(boolean block);
+    }
+
+    private final ThreadPoolExecutor[] lanes;
+    private final ScheduledExecutorService watchdog;
+    private final long budgetMillis;
+
+    SmsDispatcher(int laneCount, int laneCapacity, long budgetMillis) {
+        this.budgetMillis = budgetMillis;
+        this.lanes = new ThreadPoolExecutor[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            final String name = "sms-lane-" + i;
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<Runnable>(laneCapacity), runnable -> {
+                        Thread thread = new Thread(runnable, name);
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sms-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static SmsDispatcher shared() {
+        return shared;
+    }
+
+    // laneKey should be the normalized sender so every spelling of a number shares a lane
+    public void dispatch(String laneKey, final Callable<Boolean> decision, final Callable<Boolean> fallback,
+                         final Completion completion) {
+        final AtomicBoolean finished = new AtomicBoolean();
+        final ScheduledFuture<?> timeout = watchdog.schedule(() -> {
+            Log.w(TAG, "Decision exceeded " + budgetMillis + " ms, using the fallback");
+            finish(finished, fallback, completion);
+        }, budgetMillis, TimeUnit.MILLISECONDS);
+
+        try {
+            lane(laneKey).execute(() -> {
+                if (finished.get()) {
+                    return;  // the fallback already answered this broadcast
+                }
+                boolean block;
+                try {
+                    block = decision.call();
+                } catch (Exception e) {
+                    Log.e(TAG, "Decision failed, using the fallback", e);
+                    timeout.cancel(false);
+                    finish(finished, fallback, completion);
+                    return;
+                }
+                if (finished.compareAndSet(false, true)) {
+                    timeout.cancel(false);
+                    completion.complete(block);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "Lane for " + laneKey + " is full, using the fallback");
+            timeout.cancel(false);
+            watchdog.execute(() -> finish(finished, fallback, completion));
+        }
+    }
+
+    private static void finish(AtomicBoolean finished, Callable<Boolean> fallback, Completion completion) {
+        if (!finished.compareAndSet(false, true)) {
+            return;
+        }
+        boolean block = false;
+        try {
+            block = fallback.call();
+        } catch (Exception e) {
+            Log.e(TAG, "Fallback decision failed, letting the message through", e);
+        }
+        completion.complete(block);
+    }
+
+    private ThreadPoolExecutor lane(String laneKey) {
+        int hash = laneKey != null ? laneKey.hashCode() : 0;
+        return lanes[(hash & 0x7fffffff) % lanes.length];
+    }
+}
@@ -9,6 +9,8 @@ public class SmsMessage {
     private int readState;
     private long messageId;
     private boolean isBlocked;
+    private long threadId = -1;
+    private int unreadCount;
 
     // Constructor
     public SmsMessage(String senderName, String senderPhoneNumber, String body, long timestamp, int readState, long messageId, boolean isBlocked) {
@@ -22,6 +24,13 @@ public class SmsMessage {
         this.isBlocked = isBlocked;
     }
 
+    // An inbox row for a whole conversation: the latest snippet, its date and the unread messages
+    public SmsMessage(String senderName, String senderPhoneNumber, String snippet, long timestamp, long threadId, int unreadCount) {
+        this(senderName, senderPhoneNumber, snippet, timestamp, unreadCount > 0 ? 0 : 1, -1, false);
+        this.threadId = threadId;
+        this.unreadCount = unreadCount;
+    }
+
     // ✅ Add the setter method for isBlocked
     public void setBlocked(boolean blocked) {
         this.isBlocked = blocked;
@@ -59,4 +68,13 @@ public class SmsMessage {
     public boolean isBlocked() {
         return isBlocked;
     }
+
+    // -1 for a single message that was not read from the threads table
+    public long getThreadId() {
+        return threadId;
+    }
+
+    public int getUnreadCount() {
+        return unreadCount;
+    }
 }
@@ -3,43 +3,255 @@ package com.example.smsblocker;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
+import android.os.Build;
+import android.os.SystemClock;
 import android.provider.Telephony;
 import android.telephony.SmsMessage;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class SmsReceiver extends BroadcastReceiver {
 
+    private static final String FORMAT_3GPP2 = "3gpp2";
+
+    // The system gives up on an ordered broadcast after ten seconds; the receiver finishes by
+    // this long after onReceive even if the quarantined messages are not on disk yet
+    private static final long BROADCAST_BUDGET_MILLIS = 8_000;
+    // Longest wait for the quarantine writer, so a slow disk does not hold up the other decisions
+    private static final long QUARANTINE_SYNC_MILLIS = 2_000;
+
+    // Holds the parts of concatenated messages across broadcasts
+    private static final PduBatcher batcher = new PduBatcher();
+
     @Override
     public void onReceive(Context context, Intent intent) {
         // Check if the action is for receiving SMS
         if (intent.getAction() == null || !intent.getAction().equals("android.provider.Telephony.SMS_RECEIVED")) {
             return;
         }
+        final long startedAt = SystemClock.elapsedRealtime();
 
         // Get the SMS messages from the intent
         Object[] pdus = (Object[]) intent.getExtras().get("pdus");
         if (pdus == null) {
             return;
         }
+        String format = intent.getStringExtra("format");
 
-        // Loop through all the received messages
+        // Decode every PDU first, then group them by sender and reassemble multipart messages
+        List<PduBatcher.Part> parts = new ArrayList<>(pdus.length);
         for (Object pdu : pdus) {
-            SmsMessage smsMessage = SmsMessage.createFromPdu((byte[]) pdu);
+            SmsMessage smsMessage = createMessage((byte[]) pdu, format);
+            if (smsMessage == null) {
+                continue;
+            }
+            // The concatenation header is only parsed for GSM PDUs
+            PduBatcher.Concatenation concatenation = FORMAT_3GPP2.equals(format)
+                    ? null : PduBatcher.parseConcatenation((byte[]) pdu);
+            parts.add(new PduBatcher.Part(smsMessage.getOriginatingAddress(),
+                    smsMessage.getMessageBody(), concatenation));
+        }
+
+        // Parsing stays on the main thread so the batcher sees PDUs in arrival order
+        final long receivedAt = System.currentTimeMillis();
+        final Map<String, List<String>> messagesBySender = batcher.batch(parts, receivedAt);
+        if (messagesBySender.isEmpty()) {
+            return;
+        }
+
+        // The database and rule checks run on a worker; the broadcast stays open until they answer.
+        // Each sender is decided on its own lane, so every sender's messages are decided in
+        // arrival order even when one broadcast carries several senders; the broadcast is
+        // aborted or let through once all of them answered.
+        final Context appContext = context.getApplicationContext();
+        final PendingResult result = goAsync();
+        final Map<String, String> blockedSenders = new ConcurrentHashMap<>();
+        final AtomicInteger undecided = new AtomicInteger(messagesBySender.size());
+        for (Map.Entry<String, List<String>> entry : messagesBySender.entrySet()) {
+            final Map<String, List<String>> senderMessages = Collections.singletonMap(entry.getKey(), entry.getValue());
+            final AtomicReference<Map<String, String>> decided = new AtomicReference<>();
+            final AtomicReference<Map<String, String>> remembered = new AtomicReference<>();
+            SmsDispatcher.shared().dispatch(PhoneNumberNormalizer.normalize(appContext, entry.getKey()),
+                    () -> {
+                        decided.set(blockedSenders(appContext, senderMessages));
+                        return !decided.get().isEmpty();
+                    },
+                    () -> {
+                        remembered.set(blockedSendersInMemory(appContext, senderMessages));
+                        return !remembered.get().isEmpty();
+                    },
+                    block -> {
+                        if (block) {
+                            // The fallback only runs when its answer is the one delivered
+                            blockedSenders.putAll(remembered.get() != null ? remembered.get() : decided.get());
+                        }
+                        if (undecided.decrementAndGet() > 0) {
+                            return;
+                        }
+                        if (!blockedSenders.isEmpty()) {
+                            quarantine(appContext, messagesBySender, blockedSenders, receivedAt,
+                                    startedAt + BROADCAST_BUDGET_MILLIS);
+                            countBlocked(appContext, messagesBySender, blockedSenders, receivedAt);
+                            // Block the SMS by aborting the broadcast
+                            result.abortBroadcast();
+                        }
+                        result.finish();
+                    });
+        }
+    }
 
-            // Get sender phone number
-            String senderPhoneNumber = smsMessage.getOriginatingAddress();
+    // Maps each blocked sender to what blocks it ("blocklist", a keyword or a regex rule); empty
+    // if nothing in the broadcast is blocked
+    static Map<String, String> blockedSenders(Context context, Map<String, List<String>> messagesBySender) {
+        Map<String, String> blockedSenders = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> entry : messagesBySender.entrySet()) {
+            String senderPhoneNumber = entry.getKey();
 
-            // Check if the sender is blocked using the database
-            if (isBlocked(context, senderPhoneNumber)) {
-                // Block the SMS by aborting the broadcast
-                abortBroadcast();
-                return; // Stop further processing if blocked
+            // One sender decision covers every message the sender has in this broadcast
+            DecisionCache.Decision decision = decideSender(context, senderPhoneNumber);
+            if (decision.blocked) {
+                blockedSenders.put(senderPhoneNumber, decision.rule);
+                continue;
             }
+
+            // Body rules see the reassembled text rather than single segments
+            for (String body : entry.getValue()) {
+                String rule = findBlockedKeyword(context, body);
+                if (rule == null) {
+                    rule = findBodyRule(context, body);
+                }
+                if (rule != null) {
+                    blockedSenders.put(senderPhoneNumber, rule);
+                    break;
+                }
+            }
+        }
+        return blockedSenders;
+    }
+
+    // Aborting the broadcast drops the messages, so keep a copy of the blocked senders' messages
+    // for the blocked messages view. Waits for the copy to reach the disk, but not past deadline
+    // (an elapsedRealtime).
+    private static void quarantine(Context context, Map<String, List<String>> messagesBySender,
+                                   Map<String, String> blockedSenders, long receivedAt, long deadline) {
+        QuarantineLog log = QuarantineLog.get(context);
+        for (Map.Entry<String, String> entry : blockedSenders.entrySet()) {
+            for (String body : messagesBySender.get(entry.getKey())) {
+                if (!log.append(entry.getKey(), body, entry.getValue(), receivedAt)) {
+                    Log.w("SmsReceiver", "Quarantine queue full, not keeping a message from " + entry.getKey());
+                }
+            }
+        }
+
+        long wait = Math.min(QUARANTINE_SYNC_MILLIS, deadline - SystemClock.elapsedRealtime());
+        try {
+            if (wait <= 0 || !log.flush(wait)) {
+                Log.w("SmsReceiver", "Quarantined messages not written yet, finishing the broadcast anyway");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Only bumps in-memory counters; BlockStats writes them to the rollup tables in batches
+    private static void countBlocked(Context context, Map<String, List<String>> messagesBySender,
+                                     Map<String, String> blockedSenders, long receivedAt) {
+        BlockStats stats = BlockStats.get(context);
+        for (Map.Entry<String, String> entry : blockedSenders.entrySet()) {
+            String normalizedSender = PhoneNumberNormalizer.normalize(context, entry.getKey());
+            stats.recordBlocked(normalizedSender, entry.getValue(), receivedAt,
+                    messagesBySender.get(entry.getKey()).size());
         }
     }
 
-    private boolean isBlocked(Context context, String senderPhoneNumber) {
-        // Check if the sender is in the blocked list using the database
-        BlockedNumbersDatabaseHelper dbHelper = new BlockedNumbersDatabaseHelper(context);
-        return dbHelper.isBlocked(senderPhoneNumber);
+    // Repeat senders are answered from the cache until the blocklist or the rules change
+    private static DecisionCache.Decision decideSender(Context context, String senderPhoneNumber) {
+        DecisionCache cache = DecisionCache.shared();
+        // Read the version first: a write that lands while we decide makes this entry stale at once
+        long version = BlockedNumbersDatabaseHelper.dataVersion();
+        long now = System.currentTimeMillis();
+        DecisionCache.Decision decision = cache.get(senderPhoneNumber, version, now);
+        if (decision != null) {
+            if (decision.blocked) {
+                Log.d("SmsReceiver", "Sender blocked by cached decision: " + decision.rule);
+            }
+            return decision;
+        }
+
+        String rule = null;
+        long expiresAt = 0;
+        long blockedUntil = blockedUntil(context, senderPhoneNumber, now);
+        if (blockedUntil != PrefixTrie.NOT_BLOCKED) {
+            rule = "blocklist";
+            expiresAt = blockedUntil;
+        } else {
+            RegexRule senderRule = RegexRuleEngine.get(context).matchSender(senderPhoneNumber);
+            if (logRegexMatch(senderRule)) {
+                rule = senderRule.getLabel();
+            }
+        }
+        decision = new DecisionCache.Decision(rule != null, rule, version, expiresAt);
+        cache.put(senderPhoneNumber, decision);
+        return decision;
+    }
+
+    // Used when the full decision misses its budget: only the blocked numbers already in memory count
+    static Map<String, String> blockedSendersInMemory(Context context, Map<String, List<String>> messagesBySender) {
+        BlocklistSnapshot snapshot = BlocklistSnapshot.peek();
+        if (snapshot == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> blockedSenders = new LinkedHashMap<>();
+        long now = System.currentTimeMillis();
+        for (String senderPhoneNumber : messagesBySender.keySet()) {
+            String normalizedNumber = PhoneNumberNormalizer.normalize(context, senderPhoneNumber);
+            if (snapshot.isBlockedInMemory(normalizedNumber, now)) {
+                blockedSenders.put(senderPhoneNumber, "blocklist");
+            }
+        }
+        return blockedSenders;
+    }
+
+    private static SmsMessage createMessage(byte[] pdu, String format) {
+        if (format != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            return SmsMessage.createFromPdu(pdu, format);
+        }
+        return SmsMessage.createFromPdu(pdu);
+    }
+
+    // When the sender's block ends (0 = never), or PrefixTrie.NOT_BLOCKED if it is not blocked
+    private static long blockedUntil(Context context, String senderPhoneNumber, long now) {
+        // Check the in-memory snapshot of the blocked list instead of opening the database per PDU
+        String normalizedNumber = PhoneNumberNormalizer.normalize(context, senderPhoneNumber);
+        return BlocklistSnapshot.get(context).blockedUntil(normalizedNumber, now);
+    }
+
+    private static String findBlockedKeyword(Context context, String body) {
+        String keyword = KeywordFilter.get(context).findFirst(body);
+        if (keyword != null) {
+            Log.d("SmsReceiver", "Message blocked by keyword rule: " + keyword);
+        }
+        return keyword;
+    }
+
+    // Regex rules are evaluated highest priority first
+    private static String findBodyRule(Context context, String body) {
+        RegexRule rule = RegexRuleEngine.get(context).matchBody(body);
+        return logRegexMatch(rule) ? rule.getLabel() : null;
+    }
+
+    private static boolean logRegexMatch(RegexRule rule) {
+        if (rule != null) {
+            Log.d("SmsReceiver", "Message blocked by regex rule: " + rule.getLabel());
+        }
+        return rule != null;
     }
 }
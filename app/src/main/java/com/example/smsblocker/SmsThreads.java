@@ -0,0 +1,121 @@
+package com.example.smsblocker;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.provider.Telephony;
+import android.util.Log;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+// Resolves a phone number to the SMS provider's thread id without writing to the provider.
+// The canonical address table and the one-to-one threads are read once into a map keyed by the
+// normalized number, so every format of the same number maps to one thread and message queries
+// can filter on the indexed thread_id column instead of scanning ADDRESS. A number with no
+// thread yet simply has no id; nothing is created for it. Reads the provider, so call it off
+// the main thread.
+public final class SmsThreads {
+
+    private static final String TAG = "SmsThreads";
+
+    // "simple" returns the threads table as is rather than joining every thread's latest message.
+    // Shared with Conversations, which reads the same two tables.
+    static final Uri THREADS_URI = Telephony.Threads.CONTENT_URI.buildUpon()
+            .appendQueryParameter("simple", "true").build();
+    static final Uri CANONICAL_ADDRESSES_URI = Uri.parse("content://mms-sms/canonical-addresses");
+
+    // A miss reads the tables again at most this often, so a new conversation is found soon
+    // without every unknown number costing two provider queries
+    private static final long RELOAD_INTERVAL_MILLIS = 30_000;
+
+    private static final Object lock = new Object();
+    // normalized phone number -> provider thread id; null until the first load, replaced whole
+    private static volatile Map<String, Long> threadIds;
+    private static long loadedAt;
+
+    private SmsThreads() {
+    }
+
+    // Returns the thread id for the number, or -1 if the provider has no thread for it
+    public static long threadIdFor(Context context, String phoneNumber) {
+        String normalizedNumber = PhoneNumberNormalizer.normalize(context, phoneNumber);
+        if (normalizedNumber == null) {
+            return -1;
+        }
+
+        Map<String, Long> current = threadIds;
+        Long threadId = current != null ? current.get(normalizedNumber) : null;
+        if (threadId == null) {
+            threadId = reloadIfStale(context, current).get(normalizedNumber);
+        }
+        return threadId != null ? threadId : -1;
+    }
+
+    private static Map<String, Long> reloadIfStale(Context context, Map<String, Long> seen) {
+        synchronized (lock) {
+            // Another caller may have reloaded while this one waited for the lock
+            if (threadIds != seen || (threadIds != null
+                    && SystemClock.elapsedRealtime() - loadedAt < RELOAD_INTERVAL_MILLIS)) {
+                return threadIds;
+            }
+            threadIds = load(context);
+            loadedAt = SystemClock.elapsedRealtime();
+            return threadIds;
+        }
+    }
+
+    // Two read-only queries: canonical id -> address, then each one-to-one thread's recipient id
+    private static Map<String, Long> load(Context context) {
+        ContentResolver resolver = context.getContentResolver();
+        Map<String, Long> loaded = new HashMap<>();
+        try {
+            Map<String, String> addresses = loadAddresses(resolver);
+            if (addresses == null) {
+                return Collections.emptyMap();
+            }
+
+            try (Cursor cursor = resolver.query(THREADS_URI,
+                    new String[]{Telephony.Threads._ID, Telephony.Threads.RECIPIENT_IDS}, null, null, null)) {
+                if (cursor == null) {
+                    return Collections.emptyMap();
+                }
+                while (cursor.moveToNext()) {
+                    String recipientIds = cursor.getString(1);
+                    // Group threads list several ids; they are not any one number's conversation
+                    if (recipientIds == null || recipientIds.trim().indexOf(' ') >= 0) {
+                        continue;
+                    }
+                    String normalizedNumber = PhoneNumberNormalizer.normalize(context,
+                            addresses.get(recipientIds.trim()));
+                    if (normalizedNumber != null && !loaded.containsKey(normalizedNumber)) {
+                        loaded.put(normalizedNumber, cursor.getLong(0));
+                    }
+                }
+            }
+        } catch (IllegalArgumentException | SecurityException e) {
+            Log.e(TAG, "Unable to read threads: " + e.getMessage());
+        }
+        return Collections.unmodifiableMap(loaded);
+    }
+
+    // canonical address id -> address; one row per distinct number the phone has messaged with.
+    // Null if the provider is unavailable.
+    static Map<String, String> loadAddresses(ContentResolver resolver) {
+        try (Cursor cursor = resolver.query(CANONICAL_ADDRESSES_URI,
+                new String[]{Telephony.CanonicalAddressesColumns._ID, Telephony.CanonicalAddressesColumns.ADDRESS},
+                null, null, null)) {
+            if (cursor == null) {
+                return null;
+            }
+            Map<String, String> addresses = new HashMap<>(cursor.getCount() * 4 / 3 + 1);
+            while (cursor.moveToNext()) {
+                addresses.put(Long.toString(cursor.getLong(0)), cursor.getString(1));
+            }
+            return addresses;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.smsblocker;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+// Prints the file size, load time and heap cost of a million-number index. Only run with
+// -Pbenchmarks; BinaryBlocklistTest covers correctness.
+public class BinaryBlocklistBenchmark {
+
+    @Test
+    public void millionNumberIndex() throws IOException {
+        File file = BinaryBlocklistTest.writeList(1_000_000);
+        try {
+            Runtime runtime = Runtime.getRuntime();
+            System.gc();
+            long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+            long start = System.nanoTime();
+            BinaryBlocklist list = BinaryBlocklist.load(file);
+            long loadNanos = System.nanoTime() - start;
+            long heapAfter = runtime.totalMemory() - runtime.freeMemory();
+
+            start = System.nanoTime();
+            int hits = 0;
+            for (int i = 0; i < 1_000_000; i++) {
+                if (list.contains(BinaryBlocklistTest.number(i * 3))) {
+                    hits++;
+                }
+            }
+            long lookupNanos = (System.nanoTime() - start) / 1_000_000;
+
+            System.out.println("1M numbers: " + file.length() + " bytes on disk, loaded in "
+                    + loadNanos / 1_000 + " us, heap delta " + (heapAfter - heapBefore) + " bytes, "
+                    + lookupNanos + " ns per lookup, " + hits + " hits");
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.smsblocker;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+public class BinaryBlocklistTest {
+
+    @Test
+    public void findsEveryNumberOfTheList() throws IOException {
+        File file = writeList(100_000);
+        try {
+            BinaryBlocklist list = BinaryBlocklist.load(file);
+
+            assertEquals(100_000, list.size());
+            assertEquals(7, list.version());
+            assertTrue(list.verify());
+            for (int i = 0; i < 100_000; i++) {
+                assertTrue(list.contains(number(i * 3)));
+                assertFalse(list.contains(number(i * 3 + 1)));
+            }
+            assertFalse(list.contains("+15550000000"));
+            assertFalse(list.contains("+99999999999"));
+            assertFalse(list.contains("vodafone"));
+            assertEquals(number(3), list.numbers().get(1));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void checksumDetectsCorruption() throws IOException {
+        File file = writeList(10_000);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(file.length() - 10);
+            int b = raf.read();
+            raf.seek(file.length() - 10);
+            raf.write(b ^ 0x01);
+        }
+        try {
+            assertFalse(BinaryBlocklist.load(file).verify());
+        } finally {
+            file.delete();
+        }
+    }
+
+    // Loading checks the block offsets, so no lookup reads past a cut-off data section while
+    // the checksum is still being verified
+    @Test
+    public void rejectsATruncatedFileBeforeTheFirstLookup() throws IOException {
+        File file = writeList(10_000);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(file.length() / 2);
+        }
+        try {
+            BinaryBlocklist list = BinaryBlocklist.load(file);
+            assertEquals(0, list.size());
+            assertFalse(list.contains(number(29_997)));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void rejectsFilesWithAnUnknownHeader() throws IOException {
+        File file = File.createTempFile("spam", ".bin");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[64]);
+        }
+        try {
+            assertEquals(0, BinaryBlocklist.load(file).size());
+            assertEquals(0, BinaryBlocklist.load(new File(file.getPath() + ".missing")).size());
+        } finally {
+            file.delete();
+        }
+    }
+
+    static File writeList(int count) throws IOException {
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = NumberSet.encode(number(i * 3));
+        }
+        File file = File.createTempFile("spam", ".bin");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            BinaryBlocklist.write(out, keys, count, 7);
+        }
+        return file;
+    }
+
+    static String number(int i) {
+        return "+1555" + (10_000_000 + i);
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.smsblocker;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+public class BlockStatsTest {
+
+    @Test
+    public void concurrentCountsAddUpAcrossStripes() throws Exception {
+        final BlockStats stats = new BlockStats(BlockStats.STRIPES);
+        final int threads = 8;
+        final int perThread = 10_000;
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            workers.add(new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    stats.add(7, "+1555" + (1_000_000 + i % 50), i % 2 == 0 ? "blocklist" : "prize", 1);
+                }
+            }));
+        }
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join(30_000);
+        }
+
+        BlockStats.Rollup rollup = stats.drain();
+        assertEquals(50, rollup.senders.size());
+        for (long count : rollup.senders.values()) {
+            assertEquals(threads * perThread / 50, count);
+        }
+        assertEquals(Long.valueOf(threads * perThread / 2), rollup.rules.get(new BlockStats.Key(7, "blocklist")));
+        assertEquals(Long.valueOf(threads * perThread / 2), rollup.rules.get(new BlockStats.Key(7, "prize")));
+        assertEquals(threads * perThread, rollup.blocked());
+    }
+
+    @Test
+    public void drainingStartsAFreshBatchPerDay() {
+        BlockStats stats = new BlockStats(4);
+        stats.add(1, "+15551234567", "blocklist", 2);
+        stats.add(2, "+15551234567", "blocklist", 3);
+
+        BlockStats.Rollup first = stats.drain();
+        assertEquals(Long.valueOf(2), first.senders.get(new BlockStats.Key(1, "+15551234567")));
+        assertEquals(Long.valueOf(3), first.senders.get(new BlockStats.Key(2, "+15551234567")));
+        assertTrue(stats.drain().isEmpty());
+
+        stats.add(2, "+15551234567", "from /^\\+1900/", 1);
+        BlockStats.Rollup second = stats.drain();
+        assertEquals(1, second.blocked());
+        assertEquals(Long.valueOf(1), second.senders.get(new BlockStats.Key(2, "+15551234567")));
+    }
+}
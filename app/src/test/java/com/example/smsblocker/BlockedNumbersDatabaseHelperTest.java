@@ -0,0 +1,128 @@
+package com.example.smsblocker;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class BlockedNumbersDatabaseHelperTest {
+
+    @Test
+    public void blockingTwiceKeepsOneRow() {
+        Context context = RuntimeEnvironment.getApplication();
+        BlockedNumbersDatabaseHelper dbHelper = BlockedNumbersDatabaseHelper.getInstance(context);
+
+        assertEquals(2, dbHelper.blockNumbers(Arrays.asList(
+                "+15551234567", "+1 555 123 4567", "+15557654321", "+15557654321")));
+        dbHelper.blockNumber("+15551234567");
+        assertEquals(2, rowCount(dbHelper));
+
+        // Blocking again makes a timed block permanent
+        assertTrue(dbHelper.unblockNumber("+15557654321", System.currentTimeMillis() + 60_000));
+        dbHelper.blockNumber("+15557654321");
+        try (Cursor cursor = dbHelper.getBlockedNumbers()) {
+            while (cursor.moveToNext()) {
+                assertEquals(0, cursor.getLong(cursor.getColumnIndexOrThrow("unblock_time")));
+            }
+        }
+    }
+
+    @Test
+    public void everyChangeAdvancesTheBlocklistVersionOnce() {
+        Context context = RuntimeEnvironment.getApplication();
+        BlockedNumbersDatabaseHelper dbHelper = BlockedNumbersDatabaseHelper.getInstance(context);
+        long version = dbHelper.blocklistVersion();
+
+        dbHelper.blockNumbers(Arrays.asList("+15551234567", "+15557654321"));
+        assertEquals(version + 1, dbHelper.blocklistVersion());
+        assertTrue(dbHelper.unblockNumber("+15551234567", System.currentTimeMillis() + 60_000));
+        assertEquals(version + 2, dbHelper.blocklistVersion());
+        dbHelper.removeBlockedNumber("+15557654321");
+        assertEquals(version + 3, dbHelper.blocklistVersion());
+        // Nothing to remove, nothing changed
+        dbHelper.removeBlockedNumber("+15557654321");
+        assertEquals(version + 3, dbHelper.blocklistVersion());
+
+        assertEquals(dbHelper.blocklistVersion(), BlocklistSnapshot.get(context).version());
+    }
+
+    @Test
+    public void reblockingAPermanentNumberChangesNothing() {
+        Context context = RuntimeEnvironment.getApplication();
+        BlockedNumbersDatabaseHelper dbHelper = BlockedNumbersDatabaseHelper.getInstance(context);
+        dbHelper.blockNumbers(Arrays.asList("+15551234567", "+15557654321"));
+        long version = dbHelper.blocklistVersion();
+        long dataVersion = BlockedNumbersDatabaseHelper.dataVersion();
+
+        assertEquals(0, dbHelper.blockNumbers(Arrays.asList("+15551234567", "+1 555 765 4321")));
+        assertEquals(version, dbHelper.blocklistVersion());
+        assertEquals(dataVersion, BlockedNumbersDatabaseHelper.dataVersion());
+
+        // A timed block still becomes permanent and counts
+        assertTrue(dbHelper.unblockNumber("+15551234567", System.currentTimeMillis() + 60_000));
+        assertEquals(1, dbHelper.blockNumbers(Arrays.asList("+15551234567", "+15557654321")));
+    }
+
+    @Test
+    public void reblockingALargeListKeepsTheSnapshotSize() {
+        Context context = RuntimeEnvironment.getApplication();
+        BlockedNumbersDatabaseHelper dbHelper = BlockedNumbersDatabaseHelper.getInstance(context);
+        List<String> numbers = new ArrayList<>();
+        for (int i = 0; i <= BlocklistSnapshot.IN_MEMORY_LIMIT; i++) {
+            numbers.add("+1555" + (1_000_000 + i));
+        }
+
+        dbHelper.blockNumbers(numbers);
+        int size = BlocklistSnapshot.get(context).size();
+        assertEquals(numbers.size(), size);
+
+        // Updates of numbers already in the list must not be counted as new entries
+        dbHelper.blockNumbers(numbers);
+        assertEquals(size, BlocklistSnapshot.get(context).size());
+    }
+
+    @Test
+    public void upgradeRemovesDuplicatesAndAddsUniqueIndex() {
+        Context context = RuntimeEnvironment.getApplication();
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(context.getDatabasePath("sms_blocker.db"), null);
+        db.execSQL("CREATE TABLE blocked_numbers (_id INTEGER PRIMARY KEY AUTOINCREMENT, phone_number TEXT NOT NULL, " +
+                "unblock_time INTEGER NOT NULL DEFAULT 0, is_retention_set INTEGER NOT NULL DEFAULT 0, normalized_number TEXT);");
+        db.execSQL("CREATE INDEX idx_blocked_numbers_normalized_number ON blocked_numbers (normalized_number);");
+        db.execSQL("CREATE TABLE keyword_rules (_id INTEGER PRIMARY KEY AUTOINCREMENT, keyword TEXT NOT NULL UNIQUE);");
+        db.execSQL("CREATE TABLE regex_rules (_id INTEGER PRIMARY KEY AUTOINCREMENT, pattern TEXT NOT NULL, " +
+                "target TEXT NOT NULL, priority INTEGER NOT NULL DEFAULT 0);");
+        db.execSQL("INSERT INTO blocked_numbers (phone_number, unblock_time, normalized_number) VALUES " +
+                "('+15551234567', 500, '+15551234567'), ('+1 555 123 4567', 0, '+15551234567'), " +
+                "('+15557654321', 100, '+15557654321'), ('(555) 765-4321', 900, '+15557654321');");
+        db.setVersion(6);
+        db.close();
+
+        BlockedNumbersDatabaseHelper dbHelper = BlockedNumbersDatabaseHelper.getInstance(context);
+        try (Cursor cursor = dbHelper.getBlockedNumbers()) {
+            assertEquals(2, cursor.getCount());
+            while (cursor.moveToNext()) {
+                String phoneNumber = cursor.getString(cursor.getColumnIndexOrThrow("phone_number"));
+                assertTrue(phoneNumber, phoneNumber.equals("+1 555 123 4567") || phoneNumber.equals("(555) 765-4321"));
+            }
+        }
+        dbHelper.blockNumber("+15557654321");
+        assertEquals(2, rowCount(dbHelper));
+    }
+
+    private static int rowCount(BlockedNumbersDatabaseHelper dbHelper) {
+        try (Cursor cursor = dbHelper.getBlockedNumbers()) {
+            return cursor.getCount();
+        }
+    }
+}
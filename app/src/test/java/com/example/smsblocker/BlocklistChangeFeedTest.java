@@ -0,0 +1,90 @@
+package com.example.smsblocker;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BlocklistChangeFeedTest {
+
+    @Test
+    public void versionsChangesInCommitOrder() {
+        BlocklistChangeFeed feed = new BlocklistChangeFeed(8);
+        final List<BlocklistChangeFeed.Change> heard = new ArrayList<>();
+        feed.addListener(heard::addAll);
+
+        BlocklistChangeFeed.Batch batch = new BlocklistChangeFeed.Batch();
+        batch.added("+15551234567", "+1 555 123 4567", 0);
+        batch.added("+15557654321", "+15557654321", 0);
+        feed.publish(batch);
+        long loaded = feed.version();
+
+        batch = new BlocklistChangeFeed.Batch();
+        batch.expiryChanged("+15551234567", "+1 555 123 4567", 1_000);
+        batch.removed("+15557654321", "+15557654321");
+        feed.publish(batch);
+
+        assertEquals(4, feed.version());
+        assertEquals(4, heard.size());
+        List<BlocklistChangeFeed.Change> changes = feed.changesSince(loaded);
+        assertEquals(2, changes.size());
+        assertEquals(BlocklistChangeFeed.Type.EXPIRY_CHANGED, changes.get(0).type);
+        assertEquals(1_000, changes.get(0).unblockTime);
+        assertEquals(3, changes.get(0).version);
+        assertEquals(BlocklistChangeFeed.Type.REMOVED, changes.get(1).type);
+        assertEquals("+15557654321", changes.get(1).phoneNumber);
+        assertTrue(feed.changesSince(feed.version()).isEmpty());
+
+        // Nothing to publish leaves the version alone
+        feed.publish(new BlocklistChangeFeed.Batch());
+        assertEquals(4, feed.version());
+    }
+
+    @Test
+    public void consumersTooFarBehindReload() {
+        BlocklistChangeFeed feed = new BlocklistChangeFeed(4);
+        for (int i = 0; i < 6; i++) {
+            BlocklistChangeFeed.Batch batch = new BlocklistChangeFeed.Batch();
+            batch.added("+1555000000" + i, "+1555000000" + i, 0);
+            feed.publish(batch);
+        }
+
+        assertNull(feed.changesSince(-1));
+        assertNull(feed.changesSince(1));
+        List<BlocklistChangeFeed.Change> changes = feed.changesSince(2);
+        assertEquals(4, changes.size());
+        assertEquals("+15550000002", changes.get(0).normalizedNumber);
+        assertEquals("+15550000005", changes.get(3).normalizedNumber);
+    }
+
+    @Test
+    public void batchLargerThanTheHistoryIsOneReset() {
+        BlocklistChangeFeed feed = new BlocklistChangeFeed(4);
+        final List<BlocklistChangeFeed.Change> heard = new ArrayList<>();
+        feed.addListener(heard::addAll);
+        BlocklistChangeFeed.Batch batch = new BlocklistChangeFeed.Batch();
+        batch.added("+15550000000", "+15550000000", 0);
+        feed.publish(batch);
+        long loaded = feed.version();
+
+        batch = new BlocklistChangeFeed.Batch();
+        for (int i = 0; i < BlocklistChangeFeed.HISTORY_SIZE + 10; i++) {
+            batch.added("+1555" + (1_000_000 + i), "+1555" + (1_000_000 + i), 0);
+        }
+        feed.publish(batch);
+
+        assertEquals(loaded + 1, feed.version());
+        assertEquals(2, heard.size());
+        assertEquals(BlocklistChangeFeed.Type.RESET, heard.get(1).type);
+        assertNull(feed.changesSince(loaded));
+        assertTrue(feed.changesSince(feed.version()).isEmpty());
+
+        // Consumers that caught up after the reset get the changes that follow it
+        batch = new BlocklistChangeFeed.Batch();
+        batch.removed("+15550000000", "+15550000000");
+        feed.publish(batch);
+        assertEquals(1, feed.changesSince(loaded + 1).size());
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.smsblocker;
+
+import org.junit.Test;
+
+// Prints the measured false-positive rate for a few targets. Only run with -Pbenchmarks;
+// BloomFilterTest covers correctness.
+public class BloomFilterBenchmark {
+
+    @Test
+    public void measuredRateByTarget() {
+        for (double target : new double[]{0.001, 0.01, 0.05}) {
+            double measured = BloomFilterTest.falsePositiveRate(BloomFilterTest.filled(target));
+            System.out.println("BloomFilter target " + target + ": measured " + measured);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.smsblocker;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BloomFilterTest {
+
+    @Test
+    public void neverRejectsAnInsertedNumber() {
+        BloomFilter filter = new BloomFilter(100_000, 0.01);
+        for (int i = 0; i < 100_000; i++) {
+            filter.put("+1555" + (1_000_000 + i));
+        }
+        for (int i = 0; i < 100_000; i++) {
+            assertTrue(filter.mightContain("+1555" + (1_000_000 + i)));
+        }
+    }
+
+    @Test
+    public void stricterTargetGivesFewerFalsePositives() {
+        BloomFilter strict = filled(0.001);
+        BloomFilter loose = filled(0.05);
+
+        assertTrue(falsePositiveRate(strict) < falsePositiveRate(loose));
+        assertEquals(0.001, strict.falsePositiveRate(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidFalsePositiveRate() {
+        new BloomFilter(10, 1.5);
+    }
+
+    static BloomFilter filled(double falsePositiveRate) {
+        BloomFilter filter = new BloomFilter(50_000, falsePositiveRate);
+        for (int i = 0; i < 50_000; i++) {
+            filter.put("+92300" + (1_000_000 + i));
+        }
+        return filter;
+    }
+
+    static double falsePositiveRate(BloomFilter filter) {
+        int hits = 0;
+        int probes = 100_000;
+        for (int i = 0; i < probes; i++) {
+            if (filter.mightContain("+44770" + (1_000_000 + i))) {
+                hits++;
+            }
+        }
+        return (double) hits / probes;
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.smsblocker;
+
+import android.content.Context;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class DatabaseConcurrencyTest {
+
+    private static final int READERS = 8;
+    private static final int WRITERS = 4;
+    private static final int READS_PER_THREAD = 2_000;
+    private static final int WRITES_PER_THREAD = 200;
+
+    // Receiver lookups and UI writes at the same time: no "database is locked", no lost writes
+    @Test
+    public void concurrentLookupsAndWritesShareOneConnection() throws Exception {
+        final Context context = RuntimeEnvironment.getApplication();
+        final BlockedNumbersDatabaseHelper dbHelper = BlockedNumbersDatabaseHelper.getInstance(context);
+        assertSame(dbHelper, BlockedNumbersDatabaseHelper.getInstance(context));
+
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+        final AtomicInteger reads = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+
+        for (int r = 0; r < READERS; r++) {
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < READS_PER_THREAD; i++) {
+                        dbHelper.isBlocked(number(i % (WRITERS * WRITES_PER_THREAD)));
+                        reads.incrementAndGet();
+                    }
+                } catch (Throwable t) {
+                    failures.add(t);
+                }
+            }));
+        }
+        for (int w = 0; w < WRITERS; w++) {
+            final int writerIndex = w;
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < WRITES_PER_THREAD; i++) {
+                        String number = number(writerIndex * WRITES_PER_THREAD + i);
+                        dbHelper.blockNumber(number);
+                        if (i % 4 == 0) {
+                            dbHelper.removeBlockedNumber(number);
+                        }
+                    }
+                } catch (Throwable t) {
+                    failures.add(t);
+                }
+            }));
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join(60_000);
+        }
+
+        assertTrue("failures: " + failures, failures.isEmpty());
+        assertEquals(READERS * READS_PER_THREAD, reads.get());
+        for (int i = 0; i < WRITERS * WRITES_PER_THREAD; i++) {
+            assertEquals(i % WRITES_PER_THREAD % 4 != 0, dbHelper.isBlocked(number(i)));
+        }
+    }
+
+    private static String number(int i) {
+        return "+1555" + (1_000_000 + i);
+    }
+}
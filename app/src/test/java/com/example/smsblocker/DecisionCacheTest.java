@@ -0,0 +1,53 @@
+package com.example.smsblocker;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DecisionCacheTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+
+    @Test
+    public void servesRepeatSendersUntilTheVersionChanges() {
+        DecisionCache cache = new DecisionCache(16);
+        assertNull(cache.get("+15551234567", 1, NOW));
+        cache.put("+15551234567", new DecisionCache.Decision(true, "blocklist", 1, 0));
+
+        DecisionCache.Decision decision = cache.get("+15551234567", 1, NOW);
+        assertNotNull(decision);
+        assertTrue(decision.blocked);
+        assertEquals("blocklist", decision.rule);
+
+        // A write elsewhere bumps the version and every older entry becomes a miss
+        assertNull(cache.get("+15551234567", 2, NOW));
+        assertEquals(1, cache.hitCount());
+        assertEquals(2, cache.missCount());
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsedSender() {
+        DecisionCache cache = new DecisionCache(3);
+        cache.put("a", new DecisionCache.Decision(false, null, 0, 0));
+        cache.put("b", new DecisionCache.Decision(false, null, 0, 0));
+        cache.put("c", new DecisionCache.Decision(false, null, 0, 0));
+        assertNotNull(cache.get("a", 0, NOW));
+
+        cache.put("d", new DecisionCache.Decision(true, "from /d/", 0, 0));
+        assertEquals(3, cache.size());
+        assertNull(cache.get("b", 0, NOW));
+        assertNotNull(cache.get("a", 0, NOW));
+        assertNotNull(cache.get("c", 0, NOW));
+        assertNotNull(cache.get("d", 0, NOW));
+    }
+
+    @Test
+    public void decisionOnATimedBlockExpiresWithIt() {
+        DecisionCache cache = new DecisionCache(16);
+        cache.put("+15551234567", new DecisionCache.Decision(true, "blocklist", 1, NOW + 1_000));
+
+        assertNotNull(cache.get("+15551234567", 1, NOW + 999));
+        // The block has ended even though nothing bumped the version yet
+        assertNull(cache.get("+15551234567", 1, NOW + 1_000));
+    }
+}
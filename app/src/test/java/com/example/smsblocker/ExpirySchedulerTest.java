@@ -0,0 +1,52 @@
+package com.example.smsblocker;
+
+import android.app.AlarmManager;
+import android.content.Context;
+import android.database.Cursor;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+public class ExpirySchedulerTest {
+
+    @Test
+    public void removesTimedBlocksWhenTheyExpire() throws Exception {
+        Context context = RuntimeEnvironment.getApplication();
+        BlockedNumbersDatabaseHelper dbHelper = BlockedNumbersDatabaseHelper.getInstance(context);
+        dbHelper.blockNumber("+15551234567");
+        dbHelper.blockNumber("+15557654321");
+        assertTrue(dbHelper.unblockNumber("+15551234567", System.currentTimeMillis() + 300));
+
+        String expiring = PhoneNumberNormalizer.normalize(context, "+15551234567");
+        String permanent = PhoneNumberNormalizer.normalize(context, "+15557654321");
+        assertTrue(BlocklistSnapshot.get(context).isBlocked(expiring, System.currentTimeMillis()));
+
+        // An alarm, not an in-process timer, removes the entry
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        assertNotNull(shadowOf(alarmManager).getNextScheduledAlarm());
+
+        Thread.sleep(400);
+        // Until the alarm has run, reads compare the unblock time with the clock themselves
+        assertFalse(BlocklistSnapshot.get(context).isBlocked(expiring, System.currentTimeMillis()));
+        assertFalse(dbHelper.isBlocked("+15551234567"));
+        assertTrue(BlocklistSnapshot.get(context).isBlocked(expiring, 0));
+
+        // What the alarm's receiver runs
+        ExpiryScheduler.expireDue();
+
+        assertFalse(dbHelper.isBlocked("+15551234567"));
+        assertTrue(dbHelper.isBlocked("+15557654321"));
+        // The in-memory list drops the entry itself, not just because its time has passed
+        assertFalse(BlocklistSnapshot.get(context).isBlocked(expiring, 0));
+        assertTrue(BlocklistSnapshot.get(context).isBlocked(permanent, 0));
+        try (Cursor cursor = dbHelper.getBlockedNumbers()) {
+            assertEquals(1, cursor.getCount());
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.smsblocker;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+// Prints scan timings for small and large keyword sets. Only run with -Pbenchmarks, since the
+// numbers depend on the machine; KeywordMatcherTest covers correctness.
+public class KeywordMatcherBenchmark {
+
+    @Test
+    public void matchingCostByKeywordCount() {
+        Random random = new Random(3);
+        String[] bodies = new String[1_000];
+        for (int i = 0; i < bodies.length; i++) {
+            bodies[i] = KeywordMatcherTest.randomText(random, 160);
+        }
+
+        KeywordMatcher few = KeywordMatcher.compile(KeywordMatcherTest.randomKeywords(new Random(5), 10));
+        KeywordMatcher many = KeywordMatcher.compile(KeywordMatcherTest.randomKeywords(new Random(6), 10_000));
+
+        measure(few, bodies);
+        measure(many, bodies);
+        long fewNanos = bestOf(few, bodies);
+        long manyNanos = bestOf(many, bodies);
+        System.out.println("KeywordMatcher per 160-char body: 10 keywords " + fewNanos / bodies.length
+                + " ns, 10k keywords " + manyNanos / bodies.length + " ns");
+    }
+
+    private static long bestOf(KeywordMatcher matcher, String[] bodies) {
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < 5; run++) {
+            best = Math.min(best, measure(matcher, bodies));
+        }
+        return best;
+    }
+
+    private static long measure(KeywordMatcher matcher, String[] bodies) {
+        long start = System.nanoTime();
+        int matches = 0;
+        for (int round = 0; round < 20; round++) {
+            for (String body : bodies) {
+                if (matcher.findFirst(body) != null) {
+                    matches++;
+                }
+            }
+        }
+        long elapsed = (System.nanoTime() - start) / 20;
+        // Keeps the loop from being optimized away
+        if (matches < 0) {
+            throw new AssertionError();
+        }
+        return elapsed;
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.smsblocker;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class KeywordMatcherTest {
+
+    @Test
+    public void findsKeywordsAnywhereIgnoringCase() {
+        KeywordMatcher matcher = KeywordMatcher.compile(Arrays.asList("claim your prize", "bit.ly/", "lottery"));
+
+        assertEquals("claim your prize", matcher.findFirst("URGENT: Claim Your Prize now"));
+        assertEquals("bit.ly/", matcher.findFirst("Track parcel at https://bit.ly/3xYz"));
+        assertEquals("lottery", matcher.findFirst("You won the LOTTERY"));
+        assertNull(matcher.findFirst("See you at 6"));
+    }
+
+    @Test
+    public void followsFailureLinksAcrossOverlappingKeywords() {
+        KeywordMatcher matcher = KeywordMatcher.compile(Arrays.asList("he", "she", "his", "hers"));
+
+        assertEquals("she", matcher.findFirst("ushers"));
+        assertEquals("his", matcher.findFirst("this"));
+        assertNull(matcher.findFirst("hs"));
+    }
+
+    @Test
+    public void emptyRulesMatchNothing() {
+        KeywordMatcher matcher = KeywordMatcher.compile(Arrays.asList("", "  "));
+
+        assertEquals(0, matcher.keywordCount());
+        assertNull(matcher.findFirst("claim your prize"));
+    }
+
+    @Test
+    public void tenThousandKeywordsMissTextWithoutThem() {
+        Random random = new Random(3);
+        KeywordMatcher many = KeywordMatcher.compile(randomKeywords(new Random(6), 10_000));
+
+        assertEquals(10_000, many.keywordCount());
+        assertNull(many.findFirst(randomText(random, 160) + "zzzzzzzzzz"));
+        for (int i = 0; i < 1_000; i++) {
+            assertNull(many.findFirst(randomText(random, 160)));
+        }
+    }
+
+    // Keywords use letters that never appear in the random bodies, so every scan reads the whole text
+    static List<String> randomKeywords(Random random, int count) {
+        List<String> keywords = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            StringBuilder keyword = new StringBuilder();
+            int length = 6 + random.nextInt(10);
+            for (int j = 0; j < length; j++) {
+                keyword.append((char) ('a' + random.nextInt(20)));
+            }
+            keyword.append('x');
+            keywords.add(keyword.toString());
+        }
+        return keywords;
+    }
+
+    static String randomText(Random random, int length) {
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append(i % 6 == 5 ? ' ' : (char) ('a' + random.nextInt(20)));
+        }
+        return text.toString();
+    }
+}
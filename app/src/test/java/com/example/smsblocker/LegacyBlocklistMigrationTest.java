@@ -0,0 +1,64 @@
+package com.example.smsblocker;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class LegacyBlocklistMigrationTest {
+
+    @Test
+    public void movesPreferenceBlocksIntoTheDatabaseOnce() {
+        Context context = RuntimeEnvironment.getApplication();
+        SharedPreferences prefs = context.getSharedPreferences(LegacyBlocklistMigration.PREFS_NAME, Context.MODE_PRIVATE);
+        prefs.edit()
+                .putBoolean("+15551234567", true)
+                .putBoolean("+15550000000", false)
+                .putStringSet(LegacyBlocklistMigration.KEY_BLOCKED_NUMBERS,
+                        new HashSet<>(Arrays.asList("+15557654321", "+1 555 123 4567")))
+                .commit();
+
+        BlockedNumbersDatabaseHelper dbHelper = BlockedNumbersDatabaseHelper.getInstance(context);
+
+        assertTrue(dbHelper.isBlocked("+15551234567"));
+        assertTrue(dbHelper.isBlocked("+15557654321"));
+        assertFalse(dbHelper.isBlocked("+15550000000"));
+        // Only the marker is left in the preferences file
+        assertEquals(1, prefs.getAll().size());
+        assertTrue(prefs.getBoolean(LegacyBlocklistMigration.KEY_MIGRATED, false));
+
+        // A second run finds the marker and leaves an unblocked number alone
+        dbHelper.removeBlockedNumber("+15551234567");
+        LegacyBlocklistMigration.migrate(context, dbHelper);
+        assertFalse(dbHelper.isBlocked("+15551234567"));
+    }
+
+    @Test
+    public void movesAnImportedSpamListIntoTheDatabase() throws IOException {
+        Context context = RuntimeEnvironment.getApplication();
+        File spamList = new File(context.getFilesDir(), BinaryBlocklist.LEGACY_FILE);
+        long[] keys = {NumberSet.encode("+15551234567"), NumberSet.encode("+15557654321")};
+        try (FileOutputStream out = new FileOutputStream(spamList)) {
+            BinaryBlocklist.write(out, keys, keys.length, -1);
+        }
+
+        BlockedNumbersDatabaseHelper dbHelper = BlockedNumbersDatabaseHelper.getInstance(context);
+
+        // Imported numbers are ordinary rows now: listed, exported and unblocked like any other
+        assertTrue(dbHelper.isBlocked("+15551234567"));
+        assertTrue(dbHelper.isBlocked("+15557654321"));
+        assertFalse(spamList.exists());
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.smsblocker;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+// Prints NumberSet lookup timings against a HashSet<String> of the same numbers. Only run with
+// -Pbenchmarks, since the numbers depend on the machine; NumberSetTest covers correctness.
+public class NumberSetBenchmark {
+
+    @Test
+    public void lookupAgainstHashSetOfStrings() {
+        for (int size : new int[]{10_000, 100_000, 1_000_000}) {
+            String[] numbers = new String[size];
+            for (int i = 0; i < size; i++) {
+                numbers[i] = NumberSetTest.number(i);
+            }
+
+            NumberSet numberSet = new NumberSet(size);
+            Set<String> hashSet = new HashSet<>();
+            for (String number : numbers) {
+                numberSet.add(number);
+                hashSet.add(number);
+            }
+
+            long numberSetNanos = Long.MAX_VALUE;
+            long hashSetNanos = Long.MAX_VALUE;
+            int hits = 0;
+            for (int round = 0; round < 5; round++) {
+                // Fresh strings each round, like the numbers normalized from incoming messages,
+                // so String's cached hash code does not flatter the HashSet
+                String[] probes = probes(size);
+                String[] hashSetProbes = probes(size);
+
+                long start = System.nanoTime();
+                for (String probe : probes) {
+                    if (numberSet.contains(probe)) {
+                        hits++;
+                    }
+                }
+                numberSetNanos = Math.min(numberSetNanos, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                for (String probe : hashSetProbes) {
+                    if (hashSet.contains(probe)) {
+                        hits--;
+                    }
+                }
+                hashSetNanos = Math.min(hashSetNanos, System.nanoTime() - start);
+            }
+
+            // Keeps the loops from being optimized away; both sets hold the same numbers
+            if (hits != 0) {
+                throw new AssertionError("sets disagree");
+            }
+            System.out.println(size + " entries: NumberSet " + numberSetNanos / size + " ns/op, "
+                    + "HashSet<String> " + hashSetNanos / size + " ns/op, "
+                    + numberSet.tableBytes() / size + " bytes/entry");
+        }
+    }
+
+    // Half of the lookups hit, half miss, in random order so neither set benefits from
+    // entries that happen to sit next to each other in memory
+    private static String[] probes(int size) {
+        Random random = new Random(size);
+        String[] probes = new String[size];
+        for (int i = 0; i < size; i++) {
+            int n = random.nextInt(size);
+            probes[i] = NumberSetTest.number(i % 2 == 0 ? n : size + n);
+        }
+        return probes;
+    }
+}
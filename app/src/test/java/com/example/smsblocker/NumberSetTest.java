@@ -0,0 +1,104 @@
+package com.example.smsblocker;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class NumberSetTest {
+
+    @Test
+    public void keepsNumericAndAlphanumericKeysApart() {
+        NumberSet set = new NumberSet();
+        assertTrue(set.add("+15551234567"));
+        assertFalse(set.add("+15551234567"));
+        assertTrue(set.add("15551234567"));
+        assertTrue(set.add("00123"));
+        assertTrue(set.add("vodafone"));
+        assertTrue(set.add("+1800*"));
+
+        assertTrue(set.contains("+15551234567"));
+        assertTrue(set.contains("15551234567"));
+        assertTrue(set.contains("00123"));
+        assertFalse(set.contains("123"));
+        assertTrue(set.contains("vodafone"));
+        assertTrue(set.contains("+1800*"));
+        assertFalse(set.contains("+1800"));
+        assertFalse(set.contains(null));
+        assertEquals(5, set.size());
+    }
+
+    @Test
+    public void growsAndStaysWithinSixteenBytesPerNumber() {
+        NumberSet set = new NumberSet();
+        for (int i = 0; i < 200_000; i++) {
+            set.add(number(i));
+        }
+        assertEquals(200_000, set.size());
+        for (int i = 0; i < 200_000; i++) {
+            assertTrue(set.contains(number(i)));
+        }
+        assertFalse(set.contains(number(200_000)));
+        assertTrue("bytes per entry " + set.tableBytes() / 200_000.0, set.tableBytes() <= 16L * 200_000);
+
+        NumberSet presized = new NumberSet(200_000);
+        for (int i = 0; i < 200_000; i++) {
+            presized.add(number(i));
+        }
+        assertTrue(presized.tableBytes() <= 11L * 200_000);
+    }
+
+    @Test
+    public void removeKeepsEveryOtherEntryReachable() {
+        NumberSet set = new NumberSet();
+        for (int i = 0; i < 50_000; i++) {
+            set.add(number(i));
+        }
+        set.add("vodafone");
+        Random random = new Random(11);
+        Set<Integer> removed = new HashSet<>();
+        for (int i = 0; i < 20_000; i++) {
+            int n = random.nextInt(50_000);
+            assertEquals(removed.add(n), set.remove(number(n)));
+        }
+        assertTrue(set.remove("vodafone"));
+        assertFalse(set.remove("vodafone"));
+
+        assertEquals(50_000 - removed.size(), set.size());
+        for (int i = 0; i < 50_000; i++) {
+            assertEquals(!removed.contains(i), set.contains(number(i)));
+        }
+    }
+
+    @Test
+    public void copyIsIndependentAndSurvivesARoundTrip() throws IOException {
+        NumberSet set = new NumberSet();
+        set.add("+15551234567");
+        set.add("vodafone");
+        NumberSet copy = set.copy();
+        copy.remove("+15551234567");
+        copy.add("+15557654321");
+        assertTrue(set.contains("+15551234567"));
+        assertFalse(set.contains("+15557654321"));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        set.writeTo(new DataOutputStream(bytes));
+        NumberSet read = NumberSet.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(2, read.size());
+        assertTrue(read.contains("+15551234567"));
+        assertTrue(read.contains("vodafone"));
+        assertFalse(read.contains("+15557654321"));
+    }
+
+    static String number(int i) {
+        return "+9230" + (10_000_000 + i);
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.smsblocker;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class PduBatcherTest {
+
+    @Test
+    public void reassemblesPartsOutOfOrderIntoOneMessagePerSender() {
+        PduBatcher batcher = new PduBatcher();
+        Map<String, List<String>> messages = batcher.batch(Arrays.asList(
+                part("+15551234567", "win a ", 7, 3, 2),
+                part("+15551234567", "Hello, ", 7, 3, 1),
+                part("+15550000000", "unrelated", -1, 0, 0),
+                part("+15551234567", "free prize", 7, 3, 3)), 0);
+
+        assertEquals(2, messages.size());
+        assertEquals(Collections.singletonList("Hello, win a free prize"), messages.get("+15551234567"));
+        assertEquals(Collections.singletonList("unrelated"), messages.get("+15550000000"));
+        assertEquals(0, batcher.pendingCount());
+    }
+
+    @Test
+    public void completesMessagesSplitAcrossBroadcasts() {
+        PduBatcher batcher = new PduBatcher();
+        Map<String, List<String>> first = batcher.batch(
+                Collections.singletonList(part("+15551234567", "first half ", 42, 2, 1)), 0);
+        assertEquals(Collections.singletonList("first half "), first.get("+15551234567"));
+        assertEquals(1, batcher.pendingCount());
+
+        Map<String, List<String>> second = batcher.batch(
+                Collections.singletonList(part("+15551234567", "second half", 42, 2, 2)), 1000);
+        assertEquals(Collections.singletonList("first half second half"), second.get("+15551234567"));
+        assertEquals(0, batcher.pendingCount());
+    }
+
+    @Test
+    public void dropsStaleAndExcessPendingParts() {
+        PduBatcher batcher = new PduBatcher();
+        batcher.batch(Collections.singletonList(part("+15551234567", "a", 1, 2, 1)), 0);
+        batcher.batch(Collections.singletonList(part("+15559999999", "b", 1, 2, 1)),
+                PduBatcher.PENDING_TIMEOUT_MILLIS + 1);
+        assertEquals(1, batcher.pendingCount());
+
+        for (int i = 0; i < PduBatcher.MAX_PENDING_MESSAGES * 2; i++) {
+            batcher.batch(Collections.singletonList(part("+1555" + i, "x", i, 3, 1)), 0);
+        }
+        assertEquals(PduBatcher.MAX_PENDING_MESSAGES, batcher.pendingCount());
+    }
+
+    @Test
+    public void parsesConcatenationHeaders() {
+        // SMSC "00", SMS-DELIVER with UDHI, 11 digit sender, 8-bit reference 0x2A, part 2 of 3
+        PduBatcher.Concatenation eightBit = PduBatcher.parseConcatenation(pdu(
+                new byte[] {0x05, 0x00, 0x03, 0x2A, 0x03, 0x02}));
+        assertNotNull(eightBit);
+        assertEquals(0x2A, eightBit.reference);
+        assertEquals(3, eightBit.total);
+        assertEquals(2, eightBit.sequence);
+
+        PduBatcher.Concatenation sixteenBit = PduBatcher.parseConcatenation(pdu(
+                new byte[] {0x06, 0x08, 0x04, 0x12, 0x34, 0x02, 0x01}));
+        assertNotNull(sixteenBit);
+        assertEquals(0x1234, sixteenBit.reference);
+        assertEquals(2, sixteenBit.total);
+        assertEquals(1, sixteenBit.sequence);
+
+        assertNull(PduBatcher.parseConcatenation(pdu(null)));
+        assertNull(PduBatcher.parseConcatenation(new byte[] {0x00, 0x40, 0x0B}));
+    }
+
+    private static PduBatcher.Part part(String address, String body, int reference, int total, int sequence) {
+        return new PduBatcher.Part(address, body,
+                reference < 0 ? null : new PduBatcher.Concatenation(reference, total, sequence));
+    }
+
+    private static byte[] pdu(byte[] header) {
+        byte[] prefix = {
+                0x00,                                     // no SMSC address
+                (byte) (header != null ? 0x44 : 0x04),    // SMS-DELIVER, UDHI when a header follows
+                0x0B, (byte) 0x91, 0x51, 0x55, 0x21, 0x43, 0x65, (byte) 0xF7,
+                0x00, 0x00,                               // PID, DCS
+                0x62, 0x10, (byte) 0x81, 0x21, 0x43, 0x00, 0x00, // timestamp
+                0x10                                      // user data length
+        };
+        byte[] body = {0x41, 0x42, 0x43};
+        int headerLength = header != null ? header.length : 0;
+        byte[] pdu = new byte[prefix.length + headerLength + body.length];
+        System.arraycopy(prefix, 0, pdu, 0, prefix.length);
+        if (header != null) {
+            System.arraycopy(header, 0, pdu, prefix.length, headerLength);
+        }
+        System.arraycopy(body, 0, pdu, prefix.length + headerLength, body.length);
+        return pdu;
+    }
+}
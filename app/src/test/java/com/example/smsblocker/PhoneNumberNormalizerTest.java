@@ -0,0 +1,48 @@
+package com.example.smsblocker;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PhoneNumberNormalizerTest {
+
+    private final PhoneNumberNormalizer us = new PhoneNumberNormalizer("us");
+    private final PhoneNumberNormalizer pk = new PhoneNumberNormalizer("PK");
+
+    @Test
+    public void formatsOfTheSameNumberShareOneKey() {
+        assertEquals("+15550100", us.normalize("+1 555-0100"));
+        assertEquals("+15550100", us.normalize("5550100"));
+        assertEquals("+15550100", us.normalize("15550100"));
+        assertEquals("+15550100", us.normalize("011 1 555 0100"));
+    }
+
+    @Test
+    public void trunkPrefixIsReplacedByCallingCode() {
+        assertEquals("+923001234567", pk.normalize("0300 1234567"));
+        assertEquals("+923001234567", pk.normalize("00923001234567"));
+        assertEquals("+923001234567", pk.normalize("+92 300 1234567"));
+    }
+
+    @Test
+    public void shortCodesAndSenderIdsAreNotExpanded() {
+        assertEquals("8080", pk.normalize("8080"));
+        assertEquals("hdfcbk", us.normalize(" HDFCBK "));
+    }
+
+    @Test
+    public void prefixRulesKeepTheirWildcard() {
+        assertEquals("+1800*", us.normalize("1-800*"));
+        assertEquals("+1900*", us.normalize("900*"));
+        assertEquals("+92300*", pk.normalize("0300*"));
+        assertTrue(PhoneNumberNormalizer.isPrefixRule("+1800*"));
+        assertFalse(PhoneNumberNormalizer.isPrefixRule("+18005550100"));
+    }
+
+    @Test
+    public void unknownCountryOnlyResolvesInternationalPrefix() {
+        PhoneNumberNormalizer unknown = new PhoneNumberNormalizer(null);
+        assertEquals("+447700900123", unknown.normalize("0044 7700 900123"));
+        assertEquals("07700900123", unknown.normalize("07700 900123"));
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.smsblocker;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+// Prints lookup timings for small and large rule sets. Only run with -Pbenchmarks, since the
+// numbers depend on the machine; PrefixTrieTest covers correctness.
+public class PrefixTrieBenchmark {
+
+    private static final long NOW = 1_700_000_000_000L;
+
+    @Test
+    public void lookupCostByRuleCount() {
+        Random random = new Random(7);
+        String[] numbers = new String[10_000];
+        for (int i = 0; i < numbers.length; i++) {
+            numbers[i] = "+" + (1_000_000_000L + (long) (random.nextDouble() * 9_000_000_000L));
+        }
+
+        PrefixTrie small = PrefixTrie.build(PrefixTrieTest.randomPrefixes(1_000, new Random(1)), new long[1_000]);
+        PrefixTrie large = PrefixTrie.build(PrefixTrieTest.randomPrefixes(100_000, new Random(2)), new long[100_000]);
+
+        // Warm up both before timing
+        measure(small, numbers);
+        measure(large, numbers);
+
+        long smallNanos = bestOf(small, numbers);
+        long largeNanos = bestOf(large, numbers);
+        System.out.println("PrefixTrie lookup: 1k rules " + smallNanos / numbers.length
+                + " ns, 100k rules " + largeNanos / numbers.length + " ns");
+    }
+
+    private static long bestOf(PrefixTrie trie, String[] numbers) {
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < 5; run++) {
+            best = Math.min(best, measure(trie, numbers));
+        }
+        return best;
+    }
+
+    private static long measure(PrefixTrie trie, String[] numbers) {
+        long start = System.nanoTime();
+        int hits = 0;
+        for (int round = 0; round < 20; round++) {
+            for (String number : numbers) {
+                if (trie.matches(number, NOW)) {
+                    hits++;
+                }
+            }
+        }
+        long elapsed = (System.nanoTime() - start) / 20;
+        // Keeps the loop from being optimized away
+        if (hits < 0) {
+            throw new AssertionError();
+        }
+        return elapsed;
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.smsblocker;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PrefixTrieTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+
+    @Test
+    public void matchesAnyActivePrefixOfTheNumber() {
+        PrefixTrie trie = PrefixTrie.build(
+                new String[]{"+1800", "+1900", "+44", "+1800555"},
+                new long[]{0, NOW - 1, 0, 0});
+
+        assertTrue(trie.matches("+18001234567", NOW));
+        assertTrue(trie.matches("+447700900123", NOW));
+        assertTrue(trie.matches("+1800", NOW));
+        assertFalse(trie.matches("+1900123", NOW));  // expired rule
+        assertFalse(trie.matches("+180", NOW));
+        assertFalse(trie.matches("+15550100", NOW));
+        assertFalse(trie.matches("1800123", NOW));
+    }
+
+    @Test
+    public void longerPrefixStillMatchesWhenShorterOneExpired() {
+        PrefixTrie trie = PrefixTrie.build(new String[]{"+92", "+92300"}, new long[]{NOW - 1, NOW + 1});
+
+        assertTrue(trie.matches("+923001234567", NOW));
+        assertFalse(trie.matches("+923111234567", NOW));
+    }
+
+    @Test
+    public void blockedUntilIsTheLatestActiveRule() {
+        PrefixTrie trie = PrefixTrie.build(new String[]{"+92", "+92300", "+44", "+447"},
+                new long[]{NOW + 10, NOW + 20, NOW + 5, 0});
+
+        assertEquals(NOW + 20, trie.blockedUntil("+923001234567", NOW));
+        assertEquals(NOW + 10, trie.blockedUntil("+923111234567", NOW));
+        assertEquals(0, trie.blockedUntil("+447700900123", NOW));
+        assertEquals(PrefixTrie.NOT_BLOCKED, trie.blockedUntil("+923111234567", NOW + 10));
+        assertEquals(PrefixTrie.NOT_BLOCKED, trie.blockedUntil("+15550100", NOW));
+    }
+
+    @Test
+    public void emptyTrieMatchesNothing() {
+        PrefixTrie trie = PrefixTrie.build(new String[0], new long[0]);
+
+        assertFalse(trie.matches("+15550100", NOW));
+        assertFalse(trie.matches("", NOW));
+    }
+
+    @Test
+    public void hundredThousandPrefixesAreAllFound() {
+        String[] prefixes = randomPrefixes(100_000, new Random(42));
+        PrefixTrie trie = PrefixTrie.build(prefixes, new long[prefixes.length]);
+
+        for (String prefix : prefixes) {
+            assertTrue(prefix, trie.matches(prefix + "1234", NOW));
+        }
+        // The flattened trie stays within a small constant factor of the rule count
+        assertTrue(trie.nodeCount() < prefixes.length * 3);
+    }
+
+    static String[] randomPrefixes(int count, Random random) {
+        String[] prefixes = new String[count];
+        for (int i = 0; i < count; i++) {
+            int length = 3 + random.nextInt(6);
+            StringBuilder prefix = new StringBuilder("+");
+            prefix.append(1 + random.nextInt(9));
+            for (int j = 1; j < length; j++) {
+                prefix.append(random.nextInt(10));
+            }
+            prefixes[i] = prefix.toString();
+        }
+        return prefixes;
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.smsblocker;
+
+import org.junit.Test;
+
+import java.io.File;
+
+// Prints the slowest append during a flood. Only run with -Pbenchmarks; QuarantineLogTest
+// covers correctness.
+public class QuarantineLogBenchmark {
+
+    @Test
+    public void slowestAppendDuringAFlood() throws Exception {
+        File file = File.createTempFile("quarantine", ".log");
+        try {
+            QuarantineLog log = new QuarantineLog(file, 64, 100_000, 30 * 24 * 60 * 60 * 1000L);
+            long now = System.currentTimeMillis();
+            long worstNanos = 0;
+            for (int i = 0; i < 20_000; i++) {
+                long start = System.nanoTime();
+                log.append("+15550001000", "flood message " + i, "blocklist", now);
+                worstNanos = Math.max(worstNanos, System.nanoTime() - start);
+            }
+            log.flush();
+            System.out.println("QuarantineLog 20000 appends: " + log.size() + " kept, " + log.droppedCount()
+                    + " dropped, slowest append " + worstNanos / 1_000 + " us");
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.smsblocker;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class QuarantineLogTest {
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    @Test
+    public void pagesNewestFirstAndSurvivesReopening() throws Exception {
+        File file = File.createTempFile("quarantine", ".log");
+        try {
+            QuarantineLog log = new QuarantineLog(file, 1_024, 1_000, 30 * DAY);
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < 120; i++) {
+                assertTrue(log.append("+1555000" + (1000 + i), "message " + i, i % 2 == 0 ? "blocklist" : null, now + i));
+            }
+            log.flush();
+
+            List<QuarantineLog.Message> page = log.readPage(Long.MAX_VALUE, 50);
+            assertEquals(50, page.size());
+            assertEquals("message 119", page.get(0).body);
+            List<QuarantineLog.Message> next = log.readPage(page.get(49).sequence, 50);
+            assertEquals("message 69", next.get(0).body);
+            List<QuarantineLog.Message> last = log.readPage(next.get(49).sequence, 50);
+            assertEquals(20, last.size());
+            assertEquals("message 0", last.get(19).body);
+            assertEquals("blocklist", last.get(19).rule);
+            assertNull(last.get(18).rule);
+
+            // A write cut short by a crash is dropped when the log is opened again
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.seek(raf.length());
+                raf.writeInt(500);
+                raf.writeInt(0);
+                raf.write(new byte[20]);
+            }
+            QuarantineLog reopened = new QuarantineLog(file, 1_024, 1_000, 30 * DAY);
+            assertEquals(120, reopened.size());
+            reopened.append("+15551234567", "after reopening", "from /1555/", now + 200);
+            reopened.flush();
+            QuarantineLog.Message newest = reopened.readPage(Long.MAX_VALUE, 1).get(0);
+            assertEquals("after reopening", newest.body);
+            assertEquals(121, newest.sequence);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void compactionDropsExpiredAndOverflowingMessages() throws Exception {
+        File file = File.createTempFile("quarantine", ".log");
+        try {
+            QuarantineLog log = new QuarantineLog(file, 1_024, 100, 30 * DAY);
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < 40; i++) {
+                log.append("+15550001000", "old " + i, null, now - 40 * DAY);
+            }
+            log.flush();
+            for (int i = 0; i < 60; i++) {
+                log.append("+15550002000", "new " + i, null, now);
+            }
+            log.flush();
+
+            assertEquals(60, log.size());
+            List<QuarantineLog.Message> page = log.readPage(Long.MAX_VALUE, 100);
+            assertEquals(60, page.size());
+            assertEquals("new 0", page.get(59).body);
+            assertEquals(60, new QuarantineLog(file, 1_024, 100, 30 * DAY).size());
+
+            // Past maxMessages the log stays below 4/3 of it
+            for (int i = 0; i < 500; i++) {
+                log.append("+15550003000", "flood " + i, null, now);
+            }
+            log.flush();
+            assertTrue(log.size() <= 134);
+            assertEquals("flood 499", log.readPage(Long.MAX_VALUE, 1).get(0).body);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void floodIsKeptOrCountedAsDropped() throws Exception {
+        File file = File.createTempFile("quarantine", ".log");
+        try {
+            QuarantineLog log = new QuarantineLog(file, 64, 100_000, 30 * DAY);
+            long now = System.currentTimeMillis();
+            int accepted = 0;
+            for (int i = 0; i < 20_000; i++) {
+                if (log.append("+15550001000", "flood message " + i, "blocklist", now)) {
+                    accepted++;
+                }
+            }
+            assertTrue(log.flush(10_000));
+
+            assertEquals(20_000, accepted + log.droppedCount());
+            assertEquals(accepted, log.size());
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.smsblocker;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class RegexRuleEngineTest {
+
+    private static RegexRule body(long id, String pattern, int priority) {
+        return new RegexRule(id, pattern, RegexRule.TARGET_BODY, priority);
+    }
+
+    private static RegexRule sender(long id, String pattern, int priority) {
+        return new RegexRule(id, pattern, RegexRule.TARGET_SENDER, priority);
+    }
+
+    @Test
+    public void matchesSenderTemplatesAndBodyFormats() {
+        RegexRuleEngine engine = RegexRuleEngine.compile(Arrays.asList(
+                sender(1, "^[A-Z]{2}-PROMO\\w*$", 0),
+                body(2, "\\b\\d{6}\\b is your (otp|code)", 0),
+                body(3, "https?://\\S+\\.(xyz|top)\\b", 0)));
+
+        assertEquals(1, engine.match("VK-PROMOSALE", "Big sale today").getId());
+        assertEquals(2, engine.match("+15550100", "123456 is your OTP, share it to verify").getId());
+        assertEquals(3, engine.match("+15550100", "Visit http://win.top now").getId());
+        assertNull(engine.match("+15550100", "Lunch at 12?"));
+    }
+
+    @Test
+    public void higherPriorityRuleWinsEvenWhenItMatchesLater() {
+        RegexRuleEngine engine = RegexRuleEngine.compile(Arrays.asList(
+                body(1, "prize", 1),
+                body(2, "urgent", 5),
+                body(3, "never", 9)));
+
+        // "prize" occurs first in the text, but "urgent" has the higher priority
+        assertEquals(2, engine.match("x", "Your prize is waiting, urgent").getId());
+        assertEquals(1, engine.match("x", "Claim your prize").getId());
+    }
+
+    @Test
+    public void rulesWithBackreferencesAreEvaluatedOnTheirOwn() {
+        RegexRuleEngine engine = RegexRuleEngine.compile(Arrays.asList(
+                body(1, "(\\w)\\1{4}", 0),
+                body(2, "(a)(b)(c)", 0),
+                body(3, "win", 0)));
+
+        assertEquals(1, engine.match("x", "call 99999 now").getId());
+        assertEquals(2, engine.match("x", "abc").getId());
+        assertEquals(3, engine.match("x", "you win").getId());
+        assertNull(engine.match("x", "hello"));
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.smsblocker;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ScreenLoaderTest {
+
+    @Test
+    public void identicalLoadsShareOneRun() throws Exception {
+        ScreenLoader loader = new ScreenLoader(2, 8, Runnable::run);
+        final AtomicInteger runs = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch delivered = new CountDownLatch(3);
+        final List<String> results = Collections.synchronizedList(new ArrayList<String>());
+
+        for (int i = 0; i < 3; i++) {
+            loader.load("inbox/first", () -> {
+                runs.incrementAndGet();
+                release.await();
+                return "page";
+            }, callback(results, delivered));
+        }
+        assertEquals(1, loader.inFlightCount());
+        release.countDown();
+
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        assertEquals(1, runs.get());
+        assertEquals(3, results.size());
+        assertEquals(0, loader.inFlightCount());
+    }
+
+    @Test
+    public void cancelledQueuedLoadNeverRuns() throws Exception {
+        ScreenLoader loader = new ScreenLoader(1, 8, Runnable::run);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch delivered = new CountDownLatch(1);
+        final AtomicInteger queuedRuns = new AtomicInteger();
+        final List<String> results = Collections.synchronizedList(new ArrayList<String>());
+
+        // Occupies the only thread
+        loader.load("busy", () -> {
+            release.await();
+            return "busy";
+        }, callback(results, delivered));
+        ScreenLoader.Handle queued = loader.load("inbox/first", () -> {
+            queuedRuns.incrementAndGet();
+            return "page";
+        }, callback(results, new CountDownLatch(1)));
+
+        queued.cancel();
+        assertFalse(queued.isActive());
+        assertEquals(1, loader.inFlightCount());
+        release.countDown();
+
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        assertEquals(0, queuedRuns.get());
+        assertEquals(Collections.singletonList("busy"), results);
+    }
+
+    @Test
+    public void runningLoadIsJoinedAfterItsScreenWentAway() throws Exception {
+        ScreenLoader loader = new ScreenLoader(2, 8, Runnable::run);
+        final AtomicInteger runs = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch delivered = new CountDownLatch(1);
+        final List<String> results = Collections.synchronizedList(new ArrayList<String>());
+
+        ScreenLoader.Handle first = loader.load("inbox/first", () -> {
+            runs.incrementAndGet();
+            started.countDown();
+            release.await();
+            return "page";
+        }, callback(results, new CountDownLatch(1)));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // The old tab's view is destroyed mid-scan and the new tab asks for the same page
+        first.cancel();
+        loader.load("inbox/first", () -> {
+            runs.incrementAndGet();
+            return "second scan";
+        }, callback(results, delivered));
+        release.countDown();
+
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        assertEquals(1, runs.get());
+        assertEquals(Collections.singletonList("page"), results);
+    }
+
+    private static ScreenLoader.Callback<String> callback(final List<String> results, final CountDownLatch delivered) {
+        return new ScreenLoader.Callback<String>() {
+            @Override
+            public void onLoaded(String result) {
+                results.add(result);
+                delivered.countDown();
+            }
+
+            @Override
+            public void onFailed(Exception e) {
+                fail(e.toString());
+            }
+        };
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.smsblocker;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class SmsDispatcherTest {
+
+    @Test
+    public void decidesMessagesFromOneSenderInArrivalOrder() throws Exception {
+        SmsDispatcher dispatcher = new SmsDispatcher(4, 256, 10_000);
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch done = new CountDownLatch(200);
+
+        for (int i = 0; i < 200; i++) {
+            final int index = i;
+            dispatcher.dispatch("+15551234567", () -> {
+                order.add(index);
+                return false;
+            }, () -> true, block -> done.countDown());
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < 200; i++) {
+            assertEquals(Integer.valueOf(i), order.get(i));
+        }
+    }
+
+    @Test
+    public void usesTheFallbackOnceTheBudgetIsExceeded() throws Exception {
+        SmsDispatcher dispatcher = new SmsDispatcher(1, 4, 50);
+        final AtomicInteger completions = new AtomicInteger();
+        final List<Boolean> decisions = Collections.synchronizedList(new ArrayList<Boolean>());
+        final CountDownLatch slowDecisionDone = new CountDownLatch(1);
+
+        dispatcher.dispatch("+15551234567", () -> {
+            Thread.sleep(500);
+            slowDecisionDone.countDown();
+            return false;
+        }, () -> true, block -> {
+            completions.incrementAndGet();
+            decisions.add(block);
+        });
+
+        assertTrue(slowDecisionDone.await(5, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        // The late full decision must not complete the broadcast a second time
+        assertEquals(1, completions.get());
+        assertEquals(Collections.singletonList(true), decisions);
+    }
+
+    @Test
+    public void usesTheFallbackWhenTheLaneIsFull() throws Exception {
+        SmsDispatcher dispatcher = new SmsDispatcher(1, 1, 10_000);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch drained = new CountDownLatch(2);
+
+        dispatcher.dispatch("a", () -> {
+            release.await();
+            return false;
+        }, () -> true, block -> drained.countDown());
+        dispatcher.dispatch("a", () -> false, () -> true, block -> drained.countDown());
+
+        final List<Boolean> rejected = Collections.synchronizedList(new ArrayList<Boolean>());
+        final List<Thread> answeredOn = Collections.synchronizedList(new ArrayList<Thread>());
+        final CountDownLatch answered = new CountDownLatch(1);
+        dispatcher.dispatch("a", () -> false, () -> true, block -> {
+            rejected.add(block);
+            answeredOn.add(Thread.currentThread());
+            answered.countDown();
+        });
+        // Rejection is answered by the fallback on the watchdog, not on the caller's thread
+        assertTrue(answered.await(5, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList(true), rejected);
+        assertNotSame(Thread.currentThread(), answeredOn.get(0));
+
+        release.countDown();
+        assertTrue(drained.await(5, TimeUnit.SECONDS));
+    }
+}